@@ -1,58 +1,67 @@
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 
 class ARMInstruction {
-    public static ArrayList<ARMInstruction> generateARMInstructions(ArrayList<IR3> irs) {
+    public static ArrayList<ARMInstruction> generateARMInstructions(CompilationContext ctx, List<IR3> irs) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        SymbolTables.currentTable = null;
+        ctx.symbolTables.currentTable = null;
         for (IR3 ir : irs) {
             if (ir instanceof FunctionStartIR3) {
-                FunctionStartIR3 funcstartir = (FunctionStartIR3)ir;
-                String functionName = funcstartir.name;
-                SymbolTables.currentTable = SymbolTables.get(functionName);
+                ctx.symbolTables.currentTable = ((FunctionStartIR3)ir).table;
             }
-            instructions.addAll(ir.toARMInstructions());
+            instructions.addAll(ir.toARMInstructions(ctx));
             if (ir instanceof FunctionEndIR3) {
-                SymbolTables.currentTable = null;
+                ctx.symbolTables.currentTable = null;
             }
         }
 
         return instructions;
     }
 
-    public static void writeASMToFile(ArrayList<ARMInstruction> instructions, String filename) {
+    // unlike the String version below, a failed write is the compilation's error
+    public static void writeASMToFile(CompilationContext ctx, ArrayList<ARMInstruction> instructions, String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ASMWriter out = new ASMWriter(channel);
+            writeASM(ctx, instructions, out);
+            out.flush();
+        }
+    }
+
+    public static void writeASMToFile(String asm, String filename) {
         try {
-            Files.write(Paths.get(filename), getASMString(instructions).getBytes());
+            Files.write(Paths.get(filename), asm.getBytes());
         } catch (Exception e) {
             System.out.println("Cannot write out assembly file!");
         }
     }
 
-    public static void printASM(ArrayList<ARMInstruction> instructions) {
-        System.out.println(getASMString(instructions));
+    public static String getASMString(CompilationContext ctx, ArrayList<ARMInstruction> instructions) {
+        ASMWriter out = new ASMWriter();
+        writeASM(ctx, instructions, out);
+        return out.toString();
     }
 
-    public static String getASMString(ArrayList<ARMInstruction> instructions) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(getLeadingBoilerplate());
-        for (ARMInstruction instruction : instructions) sb.append(instruction.toString());
-        sb.append(getTrailingBoilerplate());
-
-        return sb.toString();
+    public static void writeASM(CompilationContext ctx, ArrayList<ARMInstruction> instructions, ASMWriter out) {
+        out.put(getLeadingBoilerplate(ctx));
+        for (ARMInstruction instruction : instructions) instruction.writeTo(out);
+        out.put(getTrailingBoilerplate());
     }
 
-    public static String getLeadingBoilerplate() {
+    public static String getLeadingBoilerplate(CompilationContext ctx) {
         StringBuilder sb = new StringBuilder();
         sb.append(".data\n");
-        sb.append(DataTable.getTableString());
+        sb.append(ctx.dataTable.getTableString());
         sb.append("\n\n\n.text\n");
         sb.append(".global main\n");
         sb.append("\n");
         sb.append("main:\n");
-        sb.append("bl " + ClassTables.nameOfMainClass + "_main\n");
+        sb.append("bl " + ctx.classTables.nameOfMainClass + "_main\n");
         sb.append("b end\n\n");
         return sb.toString();
     }
@@ -63,9 +72,21 @@ class ARMInstruction {
         return sb.toString();
     }
 
+    // writes this instruction's assembly text, subclasses must not allocate in here
+    public void writeTo(ASMWriter out) {
+        out.put("{PLACEHOLDER FOR " + this.getClass().getSimpleName() + "}");
+    }
+
     @Override
     public String toString() {
-        return "{PLACEHOLDER FOR " + this.getClass().getSimpleName() + "}";
+        ASMWriter out = new ASMWriter(64);
+        writeTo(out);
+        return out.toString();
+    }
+
+    // same text as toString, with label references kept apart so the text can be relabelled later
+    public void appendTo(RelocatableText out) {
+        out.append(toString());
     }
 }
 
@@ -77,10 +98,8 @@ class ARMNewline extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < num; i++) sb.append("\n");
-        return sb.toString();
+    public void writeTo(ASMWriter out) {
+        for (int i = 0; i < num; i++) out.put((byte) '\n');
     }
 }
 
@@ -96,16 +115,9 @@ class ARMSimpleMemoryLoad extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-
-        String setupOffset = String.format("ldr r11, =%d\n", offset);
-        String mainInstruction = String.format("ldr %s, [%s, r11]\n", dest, src);
-
-        sb.append(setupOffset);
-        sb.append(mainInstruction);
-
-        return sb.toString();
+    public void writeTo(ASMWriter out) {
+        out.put("ldr r11, =").putInt(offset).put((byte) '\n');
+        out.put("ldr ").putRegister(dest).put(", [").putRegister(src).put(", r11]\n");
     }
 }
 
@@ -121,16 +133,9 @@ class ARMSimpleMemoryStore extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-
-        String setupOffset = String.format("ldr r11, =%d\n", offset);
-        String mainInstruction = String.format("str %s, [%s, r11]\n", src, dest);
-
-        sb.append(setupOffset);
-        sb.append(mainInstruction);
-
-        return sb.toString();
+    public void writeTo(ASMWriter out) {
+        out.put("ldr r11, =").putInt(offset).put((byte) '\n');
+        out.put("str ").putRegister(src).put(", [").putRegister(dest).put(", r11]\n");
     }
 }
 
@@ -144,8 +149,8 @@ class ARMMov extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return String.format("mov %s, %s\n", dest, src);
+    public void writeTo(ASMWriter out) {
+        out.put("mov ").putRegister(dest).put(", ").putRegister(src).put((byte) '\n');
     }
 }
 
@@ -159,14 +164,15 @@ class ARMLoadLiteral extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return String.format("ldr %s, =%d\n", dest, literalSrc);
+    public void writeTo(ASMWriter out) {
+        out.put("ldr ").putRegister(dest).put(", =").putInt(literalSrc).put((byte) '\n');
     }
 }
 
 class ARMLoadLabel extends ARMInstruction {
     Integer label; // source label
     String dest; // register
+    boolean relocatable = true; // false for labels that are not local to the enclosing method
 
     public ARMLoadLabel(String dest, Integer label) {
         this.label = label;
@@ -174,8 +180,19 @@ class ARMLoadLabel extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return String.format("ldr %s, =L%d\n", dest, label);
+    public void writeTo(ASMWriter out) {
+        out.put("ldr ").putRegister(dest).put(", =").putLabel(label).put((byte) '\n');
+    }
+
+    @Override
+    public void appendTo(RelocatableText out) {
+        out.append("ldr " + dest + ", =L");
+        if (relocatable) {
+            out.appendLabel(label);
+        } else {
+            out.append(label.toString());
+        }
+        out.append("\n");
     }
 }
 
@@ -256,28 +273,30 @@ class ARMArithmetic extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
+    public void writeTo(ASMWriter out) {
         if (isCmp){
-            return String.format("mov %s, #0\ncmp %s, %s\nadd%s %s, #1\n", dest, src0, src1, cmpModifier, dest);
-        }
-        if (isNeg) {
-            return String.format("%s %s, %s\n", opinstr, dest, src0);
+            out.put("mov ").putRegister(dest).put(", #0\n");
+            out.put("cmp ").putRegister(src0).put(", ").putRegister(src1).put((byte) '\n');
+            out.put("add").put(cmpModifier).put((byte) ' ').putRegister(dest).put(", #1\n");
+            return;
         }
-        return String.format("%s %s, %s, %s\n", opinstr, dest, src0, src1);
+        out.put(opinstr).put((byte) ' ').putRegister(dest).put(", ").putRegister(src0);
+        if (!isNeg) out.put(", ").putRegister(src1);
+        out.put((byte) '\n');
     }
 }
 
 class ARMPrintf extends ARMInstruction {
     @Override
-    public String toString() {
-        return "bl printf(PLT)\n";
+    public void writeTo(ASMWriter out) {
+        out.put("bl printf(PLT)\n");
     }
 }
 
 class ARMMalloc extends ARMInstruction {
     @Override
-    public String toString() {
-        return "bl malloc(PLT)\n";
+    public void writeTo(ASMWriter out) {
+        out.put("bl malloc(PLT)\n");
     }
 }
 
@@ -296,8 +315,8 @@ class ARMCmp extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return String.format("cmp %s, %s\n", reg0, val1);
+    public void writeTo(ASMWriter out) {
+        out.put("cmp ").putRegister(reg0).put(", ").putRegister(val1).put((byte) '\n');
     }
 }
 
@@ -309,8 +328,8 @@ class ARMPush extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return "push {" + reg + "}\n";
+    public void writeTo(ASMWriter out) {
+        out.put("push {").putRegister(reg).put("}\n");
     }
 }
 
@@ -322,8 +341,8 @@ class ARMPop extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return "pop {" + reg + "}\n";
+    public void writeTo(ASMWriter out) {
+        out.put("pop {").putRegister(reg).put("}\n");
     }
 }
 
@@ -340,8 +359,15 @@ class ARMJump extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return String.format("b%s L%d\n", condition, toLabel);
+    public void writeTo(ASMWriter out) {
+        out.put((byte) 'b').put(condition).put((byte) ' ').putLabel(toLabel).put((byte) '\n');
+    }
+
+    @Override
+    public void appendTo(RelocatableText out) {
+        out.append("b" + condition + " L");
+        out.appendLabel(toLabel);
+        out.append("\n");
     }
 }
 
@@ -358,8 +384,8 @@ class ARMBranchLink extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return String.format("bl%s %s\n", condition, toLabel);
+    public void writeTo(ASMWriter out) {
+        out.put("bl").put(condition).put((byte) ' ').put(toLabel).put((byte) '\n');
     }
 }
 
@@ -371,8 +397,15 @@ class ARMLabel extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return String.format("L%d:\n", label);
+    public void writeTo(ASMWriter out) {
+        out.putLabel(label).put(":\n");
+    }
+
+    @Override
+    public void appendTo(RelocatableText out) {
+        out.append("L");
+        out.appendLabel(label);
+        out.append(":\n");
     }
 }
 
@@ -384,8 +417,8 @@ class ARMRawLabel extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return String.format("%s:\n", label);
+    public void writeTo(ASMWriter out) {
+        out.put(label).put(":\n");
     }
 }
 
@@ -397,8 +430,8 @@ class ARMSTMFD extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return String.format("stmfd sp!, {%s}\n", reg);
+    public void writeTo(ASMWriter out) {
+        out.put("stmfd sp!, {").putRegister(reg).put("}\n");
     }
 }
 
@@ -410,7 +443,7 @@ class ARMLDMFD extends ARMInstruction {
     }
 
     @Override
-    public String toString() {
-        return String.format("ldmfd sp!, {%s}\n", reg);
+    public void writeTo(ASMWriter out) {
+        out.put("ldmfd sp!, {").putRegister(reg).put("}\n");
     }
 }
\ No newline at end of file
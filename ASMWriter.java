@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Reusable byte buffer that ARM instructions write their assembly text into, see ARMInstruction.writeTo.
+ *
+ * Nothing is allocated per instruction: register names and fixed pieces of text are pre-encoded byte arrays,
+ * integers are formatted by hand and ASCII strings are copied char by char.
+ * A writer either flushes to a channel whenever it fills up, or grows in memory until toString is called.
+ */
+class ASMWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // every register the backend uses, plus the rest of the ARM register names
+    private static final HashMap<String, byte[]> REGISTERS = new HashMap<>();
+    static {
+        for (int i = 1; i <= 4; i++) REGISTERS.put("a" + i, bytes("a" + i));
+        for (int i = 1; i <= 8; i++) REGISTERS.put("v" + i, bytes("v" + i));
+        for (int i = 0; i <= 15; i++) REGISTERS.put("r" + i, bytes("r" + i));
+        for (String reg : new String[]{"sb", "sl", "fp", "ip", "sp", "lr", "pc"}) REGISTERS.put(reg, bytes(reg));
+    }
+
+    private byte[] buf;
+    private int len = 0;
+    private final WritableByteChannel channel; // null for an in-memory writer
+    private ByteBuffer view; // wraps buf, only used for flushing to the channel
+
+    public ASMWriter() {
+        this(BUFFER_SIZE);
+    }
+
+    public ASMWriter(int initialSize) {
+        this.buf = new byte[initialSize];
+        this.channel = null;
+        this.view = null;
+    }
+
+    public ASMWriter(WritableByteChannel channel) {
+        this.buf = new byte[BUFFER_SIZE];
+        this.channel = channel;
+        this.view = ByteBuffer.wrap(buf);
+    }
+
+    static byte[] bytes(String str) {
+        return str.getBytes();
+    }
+
+    private void ensure(int n) {
+        if (len + n <= buf.length) return;
+        flush();
+        if (len + n <= buf.length) return;
+        // in-memory writers, or a single put larger than the whole buffer
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+        if (channel != null) view = ByteBuffer.wrap(buf);
+    }
+
+    public ASMWriter put(byte b) {
+        ensure(1);
+        buf[len++] = b;
+        return this;
+    }
+
+    public ASMWriter put(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+        return this;
+    }
+
+    public ASMWriter put(String str) {
+        int n = str.length();
+        ensure(n);
+        int start = len;
+        for (int i = 0; i < n; i++) {
+            char c = str.charAt(i);
+            if (c >= 0x80) {
+                // rare, only in string literals: start over and let String do the encoding
+                len = start;
+                return put(bytes(str));
+            }
+            buf[len++] = (byte) c;
+        }
+        return this;
+    }
+
+    public ASMWriter putRegister(String reg) {
+        byte[] encoded = REGISTERS.get(reg);
+        return encoded != null ? put(encoded) : put(reg);
+    }
+
+    public ASMWriter putInt(int value) {
+        if (value == Integer.MIN_VALUE) return put("-2147483648");
+        ensure(11);
+        if (value < 0) {
+            buf[len++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) digits++;
+        for (int i = len + digits - 1; i >= len; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        len += digits;
+        return this;
+    }
+
+    // writes L<label>
+    public ASMWriter putLabel(int label) {
+        put((byte) 'L');
+        return putInt(label);
+    }
+
+    public void flush() {
+        if (channel == null || len == 0) return;
+        view.clear();
+        view.limit(len);
+        try {
+            while (view.hasRemaining()) channel.write(view);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        len = 0;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, len);
+    }
+}
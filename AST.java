@@ -3,7 +3,7 @@ import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.AbstractMap.SimpleEntry;
-import java.util.HashMap;
+import java.util.stream.IntStream;
 
 ////////////////////////////////////////
 ///// BASE AST CLASSES & UTILITIES /////
@@ -13,7 +13,6 @@ abstract class AST {
     public String kind;
     public String __type__;
     public MethodDescriptor __methoddesc__;
-    public HashMap<String, Object> operands = new HashMap<>();
 
     public AST(String kind) {
         this.kind = kind;
@@ -21,26 +20,10 @@ abstract class AST {
         this.__methoddesc__ = null;
     }
 
-    public void addOperand(String name, Object value) {
-        this.operands.put(name, value);
-    }
-
+    // the node as JSON, see ASTJSONWriter
     @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print operator
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        // recursively print operands
-        this.operands.forEach((name, value) -> sb.append("\"" + name + "\":" + value.toString() + ","));
-
-        // remove extra comma
-        sb.deleteCharAt(sb.length() - 1);
-
-        sb.append("}");
-        return sb.toString();
+    public final String toString() {
+        return ASTJSONWriter.toString(this);
     }
 
     public void distinctNamesCheck() throws DistinctNamesCheckingException {
@@ -50,63 +33,15 @@ abstract class AST {
         return lenv;
     }
 
-    public ArrayList<IR3> genIR() {
-        return new ArrayList<>();
-    }
-}
-
-/**
- * Linked list AST class for temporary use while parsing various list productions.
- * Must NOT be present in the final AST.
- * Use convertToArrayList after the full list has been generated to ensure this.
- * @param <T>
- */
-class ListAST<T> extends AST {
-    ListAST(boolean isEmpty) {
-        super("listnode");
-        this.isEmpty = isEmpty;
-    }
-
-    ListAST() {
-        this(true);
-    }
-
-    ListAST(T item, ListAST<T> rest) {
-        this(false);
-        this.item = item;
-        this.rest = rest;
-        this.addOperand("item", item);
-        this.addOperand("rest", rest);
-    }
-
-    ListAST(T item) {
-        this(item, new ListAST<T>());
-    }
-
-    private ArrayList<T> addToArrayList(ArrayList<T> xs) {
-        if (this.isEmpty)
-            return xs;
-        xs.add(this.item);
-        return this.rest.addToArrayList(xs);
-    }
-
-    public ArrayList<T> convertToArrayList() {
-        return this.addToArrayList(new ArrayList<T>());
-    }
-
-    @Override
-    public void distinctNamesCheck() throws DistinctNamesCheckingException {
-        throw new DistinctNamesCheckingException("Should not be running distinct name checker on ListAST node, which should not exist in the AST in the first place!");
+    public final ArrayList<IR3> genIR(CompilationContext ctx) {
+        ArrayList<IR3> irs = new ArrayList<>();
+        genIR(ctx, irs);
+        return irs;
     }
 
-    @Override
-    public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
-        throw new TypeCheckingException("Should not be runnign type checker on ListAST node, which should not exist in the AST in the first place!");
+    // appends the node's IR3 to irs, the value of an expression is the lvalue of the last instruction it appends
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
     }
-
-    public final boolean isEmpty;
-    private T item;
-    private ListAST<T> rest;
 }
 
 ////////////////////////////////
@@ -114,58 +49,23 @@ class ListAST<T> extends AST {
 ////////////////////////////////
 
 class ProgramAST extends AST {
-    ProgramAST(ClassAST mainclass, ListAST<ClassAST> classes) throws DistinctNamesCheckingException, TypeCheckingException {
+    ProgramAST(ClassAST mainclass, ArrayList<ClassAST> classes) {
         super("__program__");
         this.mainClass = mainclass;
-        this.classes = classes.convertToArrayList();
-
-        this.distinctNamesCheck();
-
-        ClassDescriptors classDescriptors = buildClassDescriptors();
-        LocalEnvironment localEnvironment = new LocalEnvironment();
-        this.typeCheck(classDescriptors, localEnvironment);
-
-        DataTable.init();
-
-        ArrayList<IR3> irs = this.genIR();
-        ArrayList<ARMInstruction> instructions = ARMInstruction.generateARMInstructions(irs);
-
-        SymbolTables.print();
-        ClassTables.print();
-        IR3.printIR3(irs);
-        ARMInstruction.printASM(instructions);
-        ARMInstruction.writeASMToFile(instructions, "sample.s");
+        this.classes = classes;
     }
 
     @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        // print main class
-        sb.append("\"mainClass\":");
-        sb.append(this.mainClass.toString());
-        sb.append(",");
-
-        // print other classes
-        sb.append("\"classes\":[");
-        for (ClassAST cls : this.classes) {
-            sb.append(cls.toString());
-            sb.append(',');
-        }
-        if (!this.classes.isEmpty()) sb.deleteCharAt(sb.length() - 1);
-        sb.append("]");
+    public void distinctNamesCheck() throws DistinctNamesCheckingException {
+        distinctClassNamesCheck();
 
-        sb.append("}");
-        return sb.toString();
+        // recursively check the classes themselves
+        this.mainClass.distinctNamesCheck();
+        for (ClassAST cls : this.classes) cls.distinctNamesCheck();
     }
 
-    @Override
-    public void distinctNamesCheck() throws DistinctNamesCheckingException {
-        // check for distinct class names
+    // only the class names, not what is declared inside the classes
+    public void distinctClassNamesCheck() throws DistinctNamesCheckingException {
         HashSet<String> classnames = new HashSet<>();
         for (ClassAST cls : this.classes) {
             if (cls.name.equals("Main")) {
@@ -176,10 +76,6 @@ class ProgramAST extends AST {
             }
             classnames.add(cls.name);
         }
-
-        // recursively check the classes themselves
-        this.mainClass.distinctNamesCheck();
-        for (ClassAST cls : this.classes) cls.distinctNamesCheck();
     }
 
     @Override
@@ -189,15 +85,50 @@ class ProgramAST extends AST {
         return lenv;
     }
 
+    /**
+     * Same as typeCheck, but checks every method as a separate task on the common fork-join pool.
+     * Once the class descriptors are built, methods only read shared state, so they can be checked independently.
+     * If several methods fail, the error of the first one in source order is thrown, exactly as typeCheck would.
+     */
+    public LocalEnvironment typeCheckParallel(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
+        ArrayList<ClassAST> classesToCheck = new ArrayList<>();
+        classesToCheck.add(this.mainClass);
+        classesToCheck.addAll(this.classes);
+
+        // flatten into (method, environment) pairs in source order
+        ArrayList<FuncDeclAST> methods = new ArrayList<>();
+        ArrayList<LocalEnvironment> environments = new ArrayList<>();
+        for (ClassAST cls : classesToCheck) {
+            LocalEnvironment classEnvironment = cls.classEnvironment(lenv);
+            for (FuncDeclAST method : cls.methods) {
+                methods.add(method);
+                environments.add(classEnvironment);
+            }
+        }
+
+        Exception[] errors = new Exception[methods.size()];
+        IntStream.range(0, methods.size()).parallel().forEach(i -> {
+            try {
+                methods.get(i).typeCheck(cdesc, environments.get(i));
+            } catch (TypeCheckingException | RuntimeException e) {
+                errors[i] = e;
+            }
+        });
+
+        for (Exception e : errors) {
+            if (e instanceof TypeCheckingException) throw (TypeCheckingException) e;
+            if (e != null) throw (RuntimeException) e;
+        }
+        return lenv;
+    }
+
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        irs.addAll(this.mainClass.genIR());
-        for (ClassAST cls : this.classes) irs.addAll(cls.genIR());
-        return irs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        this.mainClass.genIR(ctx, irs);
+        for (ClassAST cls : this.classes) cls.genIR(ctx, irs);
     }
 
-    private ClassDescriptors buildClassDescriptors() {
+    public ClassDescriptors buildClassDescriptors(CompilationContext ctx) {
         ClassDescriptors classDescriptors = new ClassDescriptors();
 
         ArrayList<ClassAST> classesToCheck = new ArrayList<>();
@@ -205,24 +136,10 @@ class ProgramAST extends AST {
         classesToCheck.addAll(this.classes);
 
         for (ClassAST cls : classesToCheck) {
-            ClassDescriptor clsDesc = new ClassDescriptor(cls.name);
-
-            for (VarDeclAST field : cls.members) {
-                clsDesc.addField(field.name, field.type);
-            }
-
-            for (FuncDeclAST method : cls.methods) {
-                MethodDescriptor mdDesc = new MethodDescriptor(method.returntype, method.name, cls.name);
-                for (VarDeclAST param : method.params) {
-                    mdDesc.addParam(param.name, param.type);
-                }
-                clsDesc.addMethod(method.name, mdDesc);
-            }
-
-            classDescriptors.add(cls.name, clsDesc);
+            classDescriptors.add(cls.name, cls.buildClassDescriptor());
         }
 
-        ClassTables.generateFromClassDescriptors(classDescriptors);
+        ctx.classTables.generateFromClassDescriptors(classDescriptors);
         return classDescriptors;
     }
 
@@ -231,45 +148,11 @@ class ProgramAST extends AST {
 }
 
 class ClassAST extends AST {
-    ClassAST(String name, ListAST<VarDeclAST> members, ListAST<FuncDeclAST> methods) {
+    ClassAST(String name, ArrayList<VarDeclAST> members, ArrayList<FuncDeclAST> methods) {
         super("classdecl");
         this.name = name;
-        this.members = members.convertToArrayList();
-        this.methods = methods.convertToArrayList();
-    }
-
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        // print class name
-        sb.append("\"classname\":\"" + this.name + "\",");
-
-        // print members 
-        sb.append("\"members\":[");
-        for (VarDeclAST var: this.members) {
-            sb.append(var.toString());
-            sb.append(',');
-        }
-        if (!this.members.isEmpty()) sb.deleteCharAt(sb.length() - 1);
-        sb.append("]");
-        sb.append(",");
-
-        // print methods
-        sb.append("\"methods\":[");
-        for (FuncDeclAST func : this.methods) {
-            sb.append(func.toString());
-            sb.append(',');
-        }
-        if (!this.methods.isEmpty()) sb.deleteCharAt(sb.length() - 1);
-        sb.append("]");
-
-        sb.append("}");
-        return sb.toString();
+        this.members = members;
+        this.methods = methods;
     }
 
     @Override
@@ -298,20 +181,41 @@ class ClassAST extends AST {
 
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
-        LocalEnvironment lenvNew = new LocalEnvironment(lenv);
-        lenvNew.currentClass = this.name;
+        LocalEnvironment lenvNew = classEnvironment(lenv);
         for (FuncDeclAST method : this.methods) method.typeCheck(cdesc, lenvNew);
         return lenv;
     }
 
+    public ClassDescriptor buildClassDescriptor() {
+        ClassDescriptor clsDesc = new ClassDescriptor(this.name);
+
+        for (VarDeclAST field : this.members) {
+            clsDesc.addField(field.name, field.type);
+        }
+
+        for (FuncDeclAST method : this.methods) {
+            MethodDescriptor mdDesc = new MethodDescriptor(method.returntype, method.name, this.name);
+            for (VarDeclAST param : method.params) {
+                mdDesc.addParam(param.name, param.type);
+            }
+            clsDesc.addMethod(method.name, mdDesc);
+        }
+
+        return clsDesc;
+    }
+
+    public LocalEnvironment classEnvironment(LocalEnvironment lenv) {
+        LocalEnvironment lenvNew = new LocalEnvironment(lenv);
+        lenvNew.currentClass = this.name;
+        return lenvNew;
+    }
+
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
         for (FuncDeclAST method : this.methods) {
             method.classname = this.name;
-            irs.addAll(method.genIR());
+            method.genIR(ctx, irs);
         }
-        return irs;
     }
 
     public String name;
@@ -320,46 +224,14 @@ class ClassAST extends AST {
 }
 
 class FuncDeclAST extends AST {
-    FuncDeclAST(String returntype, String name, ListAST<VarDeclAST> params, BlockAST body) {
+    FuncDeclAST(String returntype, String name, ArrayList<VarDeclAST> params, BlockAST body) {
         super("funcdecl");
         this.name = name;
         this.returntype = returntype;
-        this.params = params.convertToArrayList();
+        this.params = params;
         this.body = body;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        // print function name
-        sb.append("\"funcname\":\"" + this.name + "\",");
-
-        // print return type
-        sb.append("\"returntype\":\"" + this.returntype + "\",");
-
-        // print params
-        sb.append("\"params\":[");
-        for (VarDeclAST var: this.params) {
-            sb.append(var.toString());
-            sb.append(',');
-        }
-        if (!this.params.isEmpty()) sb.deleteCharAt(sb.length() - 1);
-        sb.append("]");
-        sb.append(",");
-
-        // print body
-        sb.append("\"body\":");
-        sb.append(this.body.toString());
-
-        sb.append("}");
-        return sb.toString();
-    }
-
     public String augmentedName() {
         return this.classname + "_" + this.name;
     }
@@ -386,28 +258,23 @@ class FuncDeclAST extends AST {
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-
-        SymbolTables.create();
-        SymbolTables.currentTable.setParam("this", Type.fromTypeString(this.classname));
-        for (VarDeclAST param : this.params) SymbolTables.currentTable.setParam(param.name, Type.fromTypeString(param.type));
-        for (VarDeclAST var : this.body.vardecls) SymbolTables.currentTable.setLocal(var.name, Type.fromTypeString(var.type));
-        ArrayList<IR3> bodyirs = body.genIR();
-        SymbolTables.flush(augmentedName());
-
-        FunctionStartIR3 funcStart = new FunctionStartIR3(returntype, augmentedName());
-        FunctionEndIR3 funcEnd = new FunctionEndIR3();
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        ctx.symbolTables.create();
+        ctx.symbolTables.currentTable.setParam("this", ctx.classTables.typeOf(this.classname));
+        for (VarDeclAST param : this.params) ctx.symbolTables.currentTable.setParam(param.name, ctx.classTables.typeOf(param.type));
+        for (VarDeclAST var : this.body.vardecls) ctx.symbolTables.currentTable.setLocal(var.name, ctx.classTables.typeOf(var.type));
 
-        funcStart.addParam("this", this.classname);
+        // the table is only complete after the body, but the function start just keeps a reference to it
+        FunctionStartIR3 funcStart = new FunctionStartIR3(returntype, augmentedName(), ctx.symbolTables.currentTable);
+        funcStart.addParam("this", ctx.classTables.typeOf(this.classname));
         for (VarDeclAST param : params) {
-            funcStart.addParam(param.name, param.type);
+            funcStart.addParam(param.name, ctx.classTables.typeOf(param.type));
         }
 
         irs.add(funcStart);
-        irs.addAll(bodyirs);
-        irs.add(funcEnd);
-        return irs;
+        body.genIR(ctx, irs);
+        ctx.symbolTables.flush(augmentedName());
+        irs.add(new FunctionEndIR3());
     }
 
     public String classname; // must initialise before calling genIR
@@ -418,41 +285,10 @@ class FuncDeclAST extends AST {
 }
 
 class BlockAST extends AST {
-    BlockAST(ListAST<VarDeclAST> vardecls, ListAST<StmtAST> stmts) {
+    BlockAST(ArrayList<VarDeclAST> vardecls, ArrayList<AST> stmts) {
         super("block");
-        this.vardecls = vardecls.convertToArrayList();
-        this.stmts = stmts.convertToArrayList();
-    }
-
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        // print var declarations
-        sb.append("\"vardecls\":[");
-        for (VarDeclAST var: this.vardecls) {
-            sb.append(var.toString());
-            sb.append(',');
-        }
-        if (!this.vardecls.isEmpty()) sb.deleteCharAt(sb.length() - 1);
-        sb.append("]");
-        sb.append(",");
-
-        // print statements
-        sb.append("\"stmts\":[");
-        for (StmtAST stmt : this.stmts) {
-            sb.append(stmt.toString());
-            sb.append(',');
-        }
-        if (!this.stmts.isEmpty()) sb.deleteCharAt(sb.length() - 1);
-        sb.append("]");
-
-        sb.append("}");
-        return sb.toString();
+        this.vardecls = vardecls;
+        this.stmts = stmts;
     }
 
     @Override
@@ -460,9 +296,9 @@ class BlockAST extends AST {
         LocalEnvironment lenvNew = new LocalEnvironment(lenv);
 
         for (VarDeclAST var : this.vardecls) lenvNew.extend(var.name, var.type);
-        for (StmtAST stmt : this.stmts) {
+        for (AST stmt : this.stmts) {
             stmt.typeCheck(cdesc, lenvNew);
-            if (stmt.kind.equals("returnstmt") && !stmt.__type__.equals(lenvNew.retType)) {
+            if (stmt.kind.equals("returnstmt") && !Symbols.same(stmt.__type__, lenvNew.retType)) {
                 throw new TypeCheckingException("Expected return type of " + lenvNew.retType + " in method " + lenvNew.currentClass + "." + lenvNew.methodName + " but encountered " + stmt.__type__);
             }
         }
@@ -470,16 +306,14 @@ class BlockAST extends AST {
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        for (StmtAST stmt : this.stmts) {
-            irs.addAll(stmt.genIR());
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        for (AST stmt : this.stmts) {
+            stmt.genIR(ctx, irs);
         }
-        return irs;
     }
 
     public ArrayList<VarDeclAST> vardecls; // should only exist in function bodies
-    public ArrayList<StmtAST> stmts;
+    public ArrayList<AST> stmts; // statements, or method calls used as statements
 }
 
 class VarDeclAST extends AST {
@@ -489,21 +323,6 @@ class VarDeclAST extends AST {
         this.name = name;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        sb.append("\"name\":\"" + this.name + "\",");
-        sb.append("\"type\":\"" + this.type + "\"");
-
-        sb.append("}");
-        return sb.toString();
-    }
-
     public String type;
     public String name;
 }
@@ -527,53 +346,34 @@ class AssignStmtAST extends StmtAST {
         this.val = val;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        sb.append("\"assignee\":" + this.assignee.toString() + ",");
-        sb.append("\"val\":" + this.val.toString());
-
-        sb.append("}");
-        return sb.toString();
-    }
-
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
         assignee.typeCheck(cdesc, lenv);
         val.typeCheck(cdesc, lenv);
-        if (!assignee.__type__.equals(val.__type__)) {
+        if (!Symbols.same(assignee.__type__, val.__type__)) {
             throw new TypeCheckingException("Assigning value of type " + val.__type__ + " to variable of type " + assignee.__type__);
         }
         return lenv;
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        ArrayList<IR3> valirs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        int valStart = irs.size();
         String rvalue;
 
         // a small optimisation to avoid things like `_v12 = b;` where they are not needed
         if (val instanceof RefAST) {
-            valirs = new ArrayList<>();
             RefAST val0 = (RefAST) val;
             rvalue = val0.id;
         } else {
-            valirs = val.genIR();
-            rvalue = IR3.extractLvalue(valirs);
+            val.genIR(ctx, irs);
+            rvalue = IR3.extractLvalue(irs, valStart);
         }
 
-        irs.addAll(valirs);
-
         if (assignee instanceof RefAST/* && !((RefAST)assignee).isActuallyMemberAccess*/) {
             // doesn't make sense to store raw id in tmp variable
-            irs.add(new AssignmentIR3(((RefAST)assignee).id, IR3.extractLvalue(valirs)));
-            return irs;
+            irs.add(new AssignmentIR3(ctx, ((RefAST)assignee).id, IR3.extractLvalue(irs, valStart)));
+            return;
         }
         /*
         if (assignee instanceof RefAST && !((RefAST)assignee).isActuallyMemberAccess) {
@@ -584,37 +384,36 @@ class AssignStmtAST extends StmtAST {
             // if indexing an object directly without any additional indirection, shortcut
             MemberAccessAST assigneeAfterCast = (MemberAccessAST)assignee;
             RefAST obj = (RefAST)assigneeAfterCast.obj;
-            Type type = Type.fromTypeString(obj.__type__);
-            irs.add(new MemberAssignmentIR3(obj.id, assigneeAfterCast.field, IR3.extractLvalue(valirs)));
-            return irs;
+            irs.add(new MemberAssignmentIR3(ctx, obj.id, assigneeAfterCast.field, IR3.extractLvalue(irs, valStart)));
+            return;
         }
 
-        ArrayList<IR3> assigneeirs = assignee.genIR();
-        int N = assigneeirs.size();
+        int assigneeStart = irs.size();
+        assignee.genIR(ctx, irs);
+        int N = irs.size() - assigneeStart;
 
         // avoid creating a member access chain that yields a primitive lvalue
         if (N > 1) {
-            MemberAccessIR3 last = (MemberAccessIR3)assigneeirs.get(N-1);
-            SymbolTableEntry lastLvalue = SymbolTables.currentTable.getEntry(last.lvalue);
+            MemberAccessIR3 last = (MemberAccessIR3)irs.get(irs.size()-1);
+            SymbolTableEntry lastLvalue = ctx.symbolTables.currentTable.getEntry(last.lvalue);
             Type typeOfLastLvalue = lastLvalue.type;
             
             if (!typeOfLastLvalue.isValueType()) {
-                irs.addAll(assigneeirs);
-                irs.add(new AssignmentIR3(IR3.extractLvalue(assigneeirs), rvalue));
-                return irs;
+                irs.add(new AssignmentIR3(ctx, IR3.extractLvalue(irs, assigneeStart), rvalue));
+                return;
             }
 
             // remove the last statement which is now unused
-            SymbolTables.currentTable.removeLocal(IR3.extractLvalue(assigneeirs));
-            assigneeirs.remove(N-1);
+            ctx.symbolTables.currentTable.removeLocal(IR3.extractLvalue(irs, assigneeStart));
+            irs.remove(irs.size()-1);
+            int assigneeEnd = irs.size();
 
-            irs.addAll(assigneeirs);
-            irs.add(new MemberAssignmentIR3(last.obj, last.field, rvalue));
+            irs.add(new MemberAssignmentIR3(ctx, last.obj, last.field, rvalue));
+            // the rest of the chain is appended a second time below
+            irs.addAll(new ArrayList<>(irs.subList(assigneeStart, assigneeEnd)));
         }
 
-        irs.addAll(assigneeirs);
-        irs.add(new AssignmentIR3(IR3.extractLvalue(assigneeirs), rvalue));
-        return irs;
+        irs.add(new AssignmentIR3(ctx, IR3.extractLvalue(irs, assigneeStart), rvalue));
     }
 
     public AST assignee;
@@ -631,20 +430,6 @@ class ReturnStmtAST extends StmtAST {
         this.retval = retval;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        sb.append("\"retval\":" + this.retval.toString());
-
-        sb.append("}");
-        return sb.toString();
-    }
-
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
         retval.typeCheck(cdesc, lenv);
@@ -653,81 +438,57 @@ class ReturnStmtAST extends StmtAST {
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        if (retval == null || retval.__type__.equals("Void")) {
-            irs.add(new ReturnIR3());
-            return irs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        if (retval == null || Symbols.same(retval.__type__, "Void")) {
+            irs.add(new ReturnIR3(ctx));
+            return;
         }
-        ArrayList<IR3> retvalirs = retval.genIR();
-        irs.addAll(retvalirs);
-        irs.add(new ReturnIR3(IR3.extractLvalue(retvalirs)));
-        return irs;
+        int retvalStart = irs.size();
+        retval.genIR(ctx, irs);
+        irs.add(new ReturnIR3(ctx, IR3.extractLvalue(irs, retvalStart)));
     }
 
     public AST retval;
 }
 
 class IfStmtAST extends StmtAST {
-    IfStmtAST(AST condition, ListAST<StmtAST> successblock, ListAST<StmtAST> failureblock) {
+    IfStmtAST(AST condition, ArrayList<AST> successblock, ArrayList<AST> failureblock) {
         super("if");
         this.condition = condition;
-        this.successblock = new BlockAST(new ListAST<>(), successblock);
-        this.failureblock = new BlockAST(new ListAST<>(), failureblock);
-    }
-
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        // print condition
-        sb.append("\"condition\":" + this.condition.toString() + ",");
-
-        // print success block
-        sb.append("\"successblock\":" + this.successblock.toString() + ",");
-
-        // print failure block
-        sb.append("\"failureblock\":" + this.failureblock.toString());
-
-        sb.append("}");
-        return sb.toString();
+        this.successblock = new BlockAST(new ArrayList<>(), successblock);
+        this.failureblock = new BlockAST(new ArrayList<>(), failureblock);
     }
 
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
         condition.typeCheck(cdesc, lenv);
-        if (!condition.__type__.equals("Bool")) throw new TypeCheckingException("If stmt condition must be Bool, but encountered " + condition.__type__);
+        if (!Symbols.same(condition.__type__, "Bool")) throw new TypeCheckingException("If stmt condition must be Bool, but encountered " + condition.__type__);
         successblock.typeCheck(cdesc, lenv);
         failureblock.typeCheck(cdesc, lenv);
         return lenv;
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-
-        ArrayList<IR3> conditionirs = condition.genIR();
-        ArrayList<IR3> successirs = successblock.genIR();
-        ArrayList<IR3> failureirs = failureblock.genIR();
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        int conditionStart = irs.size();
+        condition.genIR(ctx, irs);
+        String conditionlvalue = IR3.extractLvalue(irs, conditionStart);
 
-        LabelIR3 successlabelir = new LabelIR3();
-        LabelIR3 endlabelir = new LabelIR3();
-        GotoIR3 successgotoir = new GotoIR3(successlabelir.label, IR3.extractLvalue(conditionirs));
-        GotoIR3 endgotoir = new GotoIR3(endlabelir.label);
+        // the success block is generated before the failure block but comes after it, and the labels are made last,
+        // so temporaries, labels and data are numbered in the same order as always
+        ArrayList<IR3> successirs = new ArrayList<>();
+        successblock.genIR(ctx, successirs);
+        int successgoto = irs.size();
+        irs.add(null);
+        failureblock.genIR(ctx, irs);
 
-        irs.addAll(conditionirs);
-        irs.add(successgotoir);
-        irs.addAll(failureirs);
-        irs.add(endgotoir);
+        LabelIR3 successlabelir = new LabelIR3(ctx);
+        LabelIR3 endlabelir = new LabelIR3(ctx);
+        irs.set(successgoto, new GotoIR3(ctx, successlabelir.label, conditionlvalue));
+        irs.add(new GotoIR3(endlabelir.label));
         irs.add(successlabelir);
         irs.addAll(successirs);
         irs.add(endlabelir);
-
-        return irs;
     }
 
     public AST condition;
@@ -736,62 +497,43 @@ class IfStmtAST extends StmtAST {
 }
 
 class WhileStmtAST extends StmtAST {
-    WhileStmtAST(AST condition, ListAST<StmtAST> block) {
+    WhileStmtAST(AST condition, ArrayList<AST> block) {
         super("while");
         this.condition = condition;
-        this.block = new BlockAST(new ListAST<>(), block);
-    }
-
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        // print condition
-        sb.append("\"condition\":" + this.condition.toString() + ",");
-
-        // print block
-        sb.append("\"block\":" + this.block.toString());
-
-        sb.append("}");
-        return sb.toString();
+        this.block = new BlockAST(new ArrayList<>(), block);
     }
 
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
         condition.typeCheck(cdesc, lenv);
-        if (!condition.__type__.equals("Bool")) throw new TypeCheckingException("While loop condition must be Bool, but encountered " + condition.__type__);
+        if (!Symbols.same(condition.__type__, "Bool")) throw new TypeCheckingException("While loop condition must be Bool, but encountered " + condition.__type__);
         block.typeCheck(cdesc, lenv);
         return lenv;
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-
-        ArrayList<IR3> conditionirs = condition.genIR();
-        ArrayList<IR3> blockirs = block.genIR();
-
-        LabelIR3 startlabelir = new LabelIR3();
-        LabelIR3 successlabelir = new LabelIR3();
-        LabelIR3 endlabelir = new LabelIR3();
-        GotoIR3 successgotoir = new GotoIR3(successlabelir.label, IR3.extractLvalue(conditionirs));
-        GotoIR3 endgotoir = new GotoIR3(endlabelir.label);
-        GotoIR3 startgotoir = new GotoIR3(startlabelir.label);
-
-        irs.add(startlabelir);
-        irs.addAll(conditionirs);
-        irs.add(successgotoir);
-        irs.add(endgotoir);
-        irs.add(successlabelir);
-        irs.addAll(blockirs);
-        irs.add(startgotoir);
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        // the labels are made after the body, as always, so their slots are filled in last
+        int startlabel = irs.size();
+        irs.add(null);
+        int conditionStart = irs.size();
+        condition.genIR(ctx, irs);
+        String conditionlvalue = IR3.extractLvalue(irs, conditionStart);
+        int successgoto = irs.size();
+        irs.add(null);
+        irs.add(null);
+        irs.add(null);
+        block.genIR(ctx, irs);
+
+        LabelIR3 startlabelir = new LabelIR3(ctx);
+        LabelIR3 successlabelir = new LabelIR3(ctx);
+        LabelIR3 endlabelir = new LabelIR3(ctx);
+        irs.set(startlabel, startlabelir);
+        irs.set(successgoto, new GotoIR3(ctx, successlabelir.label, conditionlvalue));
+        irs.set(successgoto + 1, new GotoIR3(endlabelir.label));
+        irs.set(successgoto + 2, successlabelir);
+        irs.add(new GotoIR3(startlabelir.label));
         irs.add(endlabelir);
-
-        return irs;
     }
     public AST condition;
     public BlockAST block;
@@ -804,37 +546,20 @@ class PrintlnAST extends StmtAST {
         this.output = output;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        sb.append("\"output\":" + this.output.toString());
-
-        sb.append("}");
-        return sb.toString();
-    }
-
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
         output.typeCheck(cdesc, lenv);
-        if (!output.__type__.equals("String") && !output.__type__.equals("Int")) {
+        if (!Symbols.same(output.__type__, "String") && !Symbols.same(output.__type__, "Int")) {
             throw new TypeCheckingException("Can only print a String, not " + output.__type__);
         }
         return lenv;
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        ArrayList<IR3> outputir = output.genIR();
-        PrintIR3 printir = new PrintIR3(IR3.extractLvalue(outputir), output.__type__.equals("Int"));
-        irs.addAll(outputir);
-        irs.add(printir);
-        return irs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        int outputStart = irs.size();
+        output.genIR(ctx, irs);
+        irs.add(new PrintIR3(ctx, IR3.extractLvalue(irs, outputStart), Symbols.same(output.__type__, "Int")));
     }
 
     public AST output;
@@ -847,34 +572,18 @@ class ReadlnAST extends StmtAST {
         this.input = input;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        sb.append("\"input\":" + this.input.toString());
-
-        sb.append("}");
-        return sb.toString();
-    }
-
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
         input.typeCheck(cdesc, lenv);
-        if (!input.__type__.equals("String")) {
+        if (!Symbols.same(input.__type__, "String")) {
             throw new TypeCheckingException("Can only read into a String, not " + input.__type__);
         }
         return lenv;
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
         irs.add(new ReadIR3(input.id));
-        return irs;
     }
 
     public RefAST input;
@@ -887,29 +596,13 @@ class UnOpAST extends AST {
         this.operand = operand;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"__type__\":\"" + this.__type__ + "\",");
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        sb.append("\"name\":\"" + this.name + "\",");
-        sb.append("\"operand\":" + this.operand.toString());
-
-        sb.append("}");
-        return sb.toString();
-    }
-
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
         operand.typeCheck(cdesc, lenv);
-        if (name.equals("!") && !operand.__type__.equals("Bool")) {
+        if (name.equals("!") && !Symbols.same(operand.__type__, "Bool")) {
             throw new TypeCheckingException("Unary operator ! can only be used with Bool, not " + operand.__type__);
         }
-        if (name.equals("-") && !operand.__type__.equals("Int")) {
+        if (name.equals("-") && !Symbols.same(operand.__type__, "Int")) {
             throw new TypeCheckingException("Unary operator - can only be used with Int, not " + operand.__type__);
         }
         if (name.equals("!")) this.__type__ = "Bool";
@@ -918,12 +611,10 @@ class UnOpAST extends AST {
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        ArrayList<IR3> operandirs = operand.genIR();
-        irs.addAll(operandirs);
-        irs.add(new UnOpIR3(name, IR3.extractLvalue(operandirs)));
-        return irs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        int operandStart = irs.size();
+        operand.genIR(ctx, irs);
+        irs.add(new UnOpIR3(ctx, name, IR3.extractLvalue(irs, operandStart)));
     }
 
     public String name;
@@ -938,23 +629,6 @@ class BinOpAST extends AST {
         this.right = right;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"__type__\":\"" + this.__type__ + "\",");
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        sb.append("\"name\":\"" + this.name + "\",");
-        sb.append("\"left\":" + this.left.toString() + ",");
-        sb.append("\"right\":" + this.right.toString());
-
-        sb.append("}");
-        return sb.toString();
-    }
-
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
         boolean isIntExp = name.equals("+") || name.equals("-") || name.equals("*") || name.equals("/");
@@ -962,12 +636,12 @@ class BinOpAST extends AST {
         left.typeCheck(cdesc, lenv);
         right.typeCheck(cdesc, lenv);
         if (isIntExp || isIntCmp) {
-            if (!left.__type__.equals("Int") || !right.__type__.equals("Int")) {
+            if (!Symbols.same(left.__type__, "Int") || !Symbols.same(right.__type__, "Int")) {
                 throw new TypeCheckingException("Binary operation " + name + " can only be used on Ints");
             }
             this.__type__ = isIntCmp ? "Bool" : "Int";
         } else {
-            if (!left.__type__.equals("Bool") || !right.__type__.equals("Bool")) {
+            if (!Symbols.same(left.__type__, "Bool") || !Symbols.same(right.__type__, "Bool")) {
                 throw new TypeCheckingException("Binary operation " + name + " can only be used on Bools");
             }
             this.__type__ = "Bool";
@@ -976,14 +650,13 @@ class BinOpAST extends AST {
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        ArrayList<IR3> leftirs = left.genIR();
-        ArrayList<IR3> rightirs = right.genIR();
-        irs.addAll(leftirs);
-        irs.addAll(rightirs);
-        irs.add(new BinOpIR3(name, IR3.extractLvalue(leftirs), IR3.extractLvalue(rightirs)));
-        return irs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        int leftStart = irs.size();
+        left.genIR(ctx, irs);
+        String leftLvalue = IR3.extractLvalue(irs, leftStart);
+        int rightStart = irs.size();
+        right.genIR(ctx, irs);
+        irs.add(new BinOpIR3(ctx, name, leftLvalue, IR3.extractLvalue(irs, rightStart)));
     }
 
     public String name;
@@ -996,19 +669,6 @@ class NullPtrAST extends AST {
         super("nullptr");
         this.__type__ = "*";
     }
-
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"kind\":\"" + this.kind + "\"");
-
-
-        sb.append("}");
-        return sb.toString();
-    }
 }
 
 class ThisPtrAST extends AST {
@@ -1017,24 +677,8 @@ class ThisPtrAST extends AST {
     }
 
     @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"__type__\":\"" + this.__type__ + "\",");
-        sb.append("\"kind\":\"" + this.kind + "\"");
-
-
-        sb.append("}");
-        return sb.toString();
-    }
-
-    @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        irs.add(new AssignmentIR3(IR3.mkVar(Type.fromTypeString(this.__type__)), "this"));
-        return irs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        irs.add(new AssignmentIR3(ctx, ctx.mkVar(ctx.classTables.typeOf(this.__type__)), "this"));
     }
 
     @Override
@@ -1057,10 +701,8 @@ class ConstructionAST extends AST {
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        irs.add(new ConstructionIR3(classname));
-        return irs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        irs.add(new ConstructionIR3(ctx, classname));
     }
 
     public String classname;
@@ -1072,21 +714,6 @@ class RefAST extends AST {
         this.id = id;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"__type__\":\"" + this.__type__ + "\",");
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        sb.append("\"id\":\"" + this.id + "\"");
-
-        sb.append("}");
-        return sb.toString();
-    }
-
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
         if (!lenv.contains(id)) {
@@ -1097,10 +724,8 @@ class RefAST extends AST {
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        irs.add(new AssignmentIR3(IR3.mkVar(Type.fromTypeString(this.__type__)), id));
-        return irs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        irs.add(new AssignmentIR3(ctx, ctx.mkVar(ctx.classTables.typeOf(this.__type__)), id));
     }
 
     public MemberAccessAST getActualMemberAccessAST() {
@@ -1111,80 +736,52 @@ class RefAST extends AST {
 }
 
 class FuncCallAST extends AST {
-    FuncCallAST(AST func, ListAST<AST> args) {
+    FuncCallAST(AST func, ArrayList<AST> args) {
         super("funccall");
         this.func = func;
-        this.args = args.convertToArrayList();
-    }
-
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"__type__\":\"" + this.__type__ + "\",");
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        // print func
-        sb.append("\"func\":" + this.func.toString() + ",");
-
-        // print args
-        sb.append("\"args\":[");
-        for (AST arg : this.args) {
-            sb.append(arg.toString());
-            sb.append(',');
-        }
-        if (!this.args.isEmpty()) sb.deleteCharAt(sb.length() - 1);
-        sb.append("]");
-
-        sb.append("}");
-        return sb.toString();
+        this.args = args;
     }
 
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
         func.typeCheck(cdesc, lenv);
-        if (!func.__type__.equals("FUNCTION")) throw new TypeCheckingException("Can only call a function!");
+        if (!Symbols.same(func.__type__, "FUNCTION")) throw new TypeCheckingException("Can only call a function!");
         MethodDescriptor md = func.__methoddesc__;
         if (args.size() != md.params.size()) throw new TypeCheckingException("Wrong number of arguments in function " + md.name);
         for (int i=0; i<md.params.size(); i++) {
             AST arg = args.get(i);
             SimpleEntry<String, String> param = md.params.get(i);
             arg.typeCheck(cdesc, lenv);
-            if (!arg.__type__.equals(param.getValue())) throw new TypeCheckingException("Parameter type mismatch for parameter " + param.getKey() + " in function " + md.name);
+            if (!Symbols.same(arg.__type__, param.getValue())) throw new TypeCheckingException("Parameter type mismatch for parameter " + param.getKey() + " in function " + md.name);
         }
         this.__type__ = md.returntype;
         return lenv;
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
         ArrayList<String> argVarNames = new ArrayList<>();
 
         // put the object name (this) into args
-        ArrayList<IR3> funcirs = ((MemberAccessAST)func).obj.genIR();
-        irs.addAll(funcirs);
-        argVarNames.add(IR3.extractLvalue(funcirs));
+        int funcStart = irs.size();
+        ((MemberAccessAST)func).obj.genIR(ctx, irs);
+        argVarNames.add(IR3.extractLvalue(irs, funcStart));
 
         for (AST arg : args) {
-            ArrayList<IR3> argirs = arg.genIR();
-            String argVarName = IR3.extractLvalue(argirs);
-            irs.addAll(argirs);
-            argVarNames.add(argVarName);
+            int argStart = irs.size();
+            arg.genIR(ctx, irs);
+            argVarNames.add(IR3.extractLvalue(irs, argStart));
         }
 
-        irs.add(new FunctionCallIR3(augmentedName(), returnType(), argVarNames));
-        return irs;
+        irs.add(new FunctionCallIR3(ctx, augmentedName(), returnType(ctx), argVarNames));
     }
 
     public String augmentedName() {
         return func.__methoddesc__.classname + "_" + func.__methoddesc__.name;
     }
 
-    public Type returnType() {
-        return Type.fromTypeString(func.__methoddesc__.returntype);
+    public Type returnType(CompilationContext ctx) {
+        return ctx.classTables.typeOf(func.__methoddesc__.returntype);
     }
 
     public AST func;
@@ -1198,22 +795,6 @@ class MemberAccessAST extends AST {
         this.field = field;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-
-        // print kind
-        sb.append("\"__type__\":\"" + this.__type__ + "\",");
-        sb.append("\"kind\":\"" + this.kind + "\",");
-
-        sb.append("\"obj\":" + this.obj.toString() + ",");
-        sb.append("\"field\":\"" + this.field + "\"");
-
-        sb.append("}");
-        return sb.toString();
-    }
-
     @Override
     public LocalEnvironment typeCheck(ClassDescriptors cdesc, LocalEnvironment lenv) throws TypeCheckingException {
         obj.typeCheck(cdesc, lenv);
@@ -1232,12 +813,10 @@ class MemberAccessAST extends AST {
     }
 
     @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        ArrayList<IR3> objirs = obj.genIR();
-        irs.addAll(objirs);
-        irs.add(new MemberAccessIR3(IR3.extractLvalue(objirs), field));
-        return irs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        int objStart = irs.size();
+        obj.genIR(ctx, irs);
+        irs.add(new MemberAccessIR3(ctx, IR3.extractLvalue(irs, objStart), field));
     }
 
     public AST obj;
@@ -1252,15 +831,8 @@ class IntAST extends AST {
     }
 
     @Override
-    public String toString() {
-        return "" + val;
-    }
-
-    @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        irs.add(new IntIR3(val));
-        return irs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        irs.add(new IntIR3(ctx, val));
     }
 
     public Integer val;
@@ -1273,15 +845,8 @@ class BoolAST extends AST {
     }
 
     @Override
-    public String toString() {
-        return "" + val;
-    }
-
-    @Override
-    public ArrayList<IR3> genIR() {
-        ArrayList<IR3> irs = new ArrayList<>();
-        irs.add(new BoolIR3(val));
-        return irs;
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        irs.add(new BoolIR3(ctx, val));
     }
 
     public Boolean val;
@@ -1294,18 +859,11 @@ class StringAST extends AST {
     }
 
     @Override
-    public String toString() {
-        return "\"" + val + "\"";
-    }
-
-    @Override
-    public ArrayList<IR3> genIR() {
-        Integer label = IR3.mkLabel();
-        DataTable.create(label, new DataTableEntry(".asciz", val));
+    public void genIR(CompilationContext ctx, ArrayList<IR3> irs) {
+        Integer label = ctx.mkLabel();
+        ctx.dataTable.create(label, new DataTableEntry(".asciz", val));
 
-        ArrayList<IR3> irs = new ArrayList<>();
-        irs.add(new LabelAssignmentIR3(IR3.mkVar(Type.JLSTRING), label));
-        return irs;
+        irs.add(new LabelAssignmentIR3(ctx, ctx.mkVar(Type.JLSTRING), label));
     }
 
     public String val;
@@ -0,0 +1,176 @@
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+
+/**
+ * Writes an AST as JSON, the format AST.toString returns.
+ *
+ * The whole tree is written in one pass into an ASMWriter, so nothing is built per node: written to a channel,
+ * the dump only ever holds the writer's fixed size buffer, however big the program is.
+ * Names and string literals are written as they are, without escaping.
+ */
+class ASTJSONWriter {
+    // writes the tree and a newline to the channel, and flushes it
+    public static void write(WritableByteChannel channel, AST node) {
+        ASMWriter out = new ASMWriter(channel);
+        write(out, node);
+        out.put((byte) '\n');
+        out.flush();
+    }
+
+    public static String toString(AST node) {
+        ASMWriter out = new ASMWriter(256);
+        write(out, node);
+        return out.toString();
+    }
+
+    public static void write(ASMWriter out, AST node) {
+        if (node instanceof ProgramAST) {
+            ProgramAST program = (ProgramAST) node;
+            kind(out, program);
+            out.put(",\"mainClass\":");
+            write(out, program.mainClass);
+            out.put(",\"classes\":");
+            writeList(out, program.classes);
+            out.put((byte) '}');
+        } else if (node instanceof ClassAST) {
+            ClassAST cls = (ClassAST) node;
+            kind(out, cls);
+            field(out, "classname", cls.name);
+            out.put(",\"members\":");
+            writeList(out, cls.members);
+            out.put(",\"methods\":");
+            writeList(out, cls.methods);
+            out.put((byte) '}');
+        } else if (node instanceof FuncDeclAST) {
+            FuncDeclAST func = (FuncDeclAST) node;
+            kind(out, func);
+            field(out, "funcname", func.name);
+            field(out, "returntype", func.returntype);
+            out.put(",\"params\":");
+            writeList(out, func.params);
+            out.put(",\"body\":");
+            write(out, func.body);
+            out.put((byte) '}');
+        } else if (node instanceof BlockAST) {
+            BlockAST block = (BlockAST) node;
+            kind(out, block);
+            out.put(",\"vardecls\":");
+            writeList(out, block.vardecls);
+            out.put(",\"stmts\":");
+            writeList(out, block.stmts);
+            out.put((byte) '}');
+        } else if (node instanceof VarDeclAST) {
+            VarDeclAST var = (VarDeclAST) node;
+            kind(out, var);
+            field(out, "name", var.name);
+            field(out, "type", var.type);
+            out.put((byte) '}');
+        } else if (node instanceof AssignStmtAST) {
+            AssignStmtAST assign = (AssignStmtAST) node;
+            kind(out, assign);
+            child(out, "assignee", assign.assignee);
+            child(out, "val", assign.val);
+            out.put((byte) '}');
+        } else if (node instanceof ReturnStmtAST) {
+            kind(out, node);
+            child(out, "retval", ((ReturnStmtAST) node).retval);
+            out.put((byte) '}');
+        } else if (node instanceof IfStmtAST) {
+            IfStmtAST stmt = (IfStmtAST) node;
+            kind(out, stmt);
+            child(out, "condition", stmt.condition);
+            child(out, "successblock", stmt.successblock);
+            child(out, "failureblock", stmt.failureblock);
+            out.put((byte) '}');
+        } else if (node instanceof WhileStmtAST) {
+            WhileStmtAST stmt = (WhileStmtAST) node;
+            kind(out, stmt);
+            child(out, "condition", stmt.condition);
+            child(out, "block", stmt.block);
+            out.put((byte) '}');
+        } else if (node instanceof PrintlnAST) {
+            kind(out, node);
+            child(out, "output", ((PrintlnAST) node).output);
+            out.put((byte) '}');
+        } else if (node instanceof ReadlnAST) {
+            kind(out, node);
+            child(out, "input", ((ReadlnAST) node).input);
+            out.put((byte) '}');
+        } else if (node instanceof UnOpAST) {
+            UnOpAST op = (UnOpAST) node;
+            typedKind(out, op);
+            field(out, "name", op.name);
+            child(out, "operand", op.operand);
+            out.put((byte) '}');
+        } else if (node instanceof BinOpAST) {
+            BinOpAST op = (BinOpAST) node;
+            typedKind(out, op);
+            field(out, "name", op.name);
+            child(out, "left", op.left);
+            child(out, "right", op.right);
+            out.put((byte) '}');
+        } else if (node instanceof ThisPtrAST) {
+            typedKind(out, node);
+            out.put((byte) '}');
+        } else if (node instanceof ConstructionAST) {
+            typedKind(out, node);
+            field(out, "classname", ((ConstructionAST) node).classname);
+            out.put((byte) '}');
+        } else if (node instanceof RefAST) {
+            typedKind(out, node);
+            field(out, "id", ((RefAST) node).id);
+            out.put((byte) '}');
+        } else if (node instanceof FuncCallAST) {
+            FuncCallAST call = (FuncCallAST) node;
+            typedKind(out, call);
+            child(out, "func", call.func);
+            out.put(",\"args\":");
+            writeList(out, call.args);
+            out.put((byte) '}');
+        } else if (node instanceof MemberAccessAST) {
+            MemberAccessAST access = (MemberAccessAST) node;
+            typedKind(out, access);
+            child(out, "obj", access.obj);
+            field(out, "field", access.field);
+            out.put((byte) '}');
+        } else if (node instanceof IntAST) {
+            out.putInt(((IntAST) node).val);
+        } else if (node instanceof BoolAST) {
+            out.put(((BoolAST) node).val ? "true" : "false");
+        } else if (node instanceof StringAST) {
+            out.put((byte) '"').put(((StringAST) node).val).put((byte) '"');
+        } else {
+            // null, void and the other nodes with nothing but a kind
+            kind(out, node);
+            out.put((byte) '}');
+        }
+    }
+
+    private static void writeList(ASMWriter out, ArrayList<? extends AST> nodes) {
+        out.put((byte) '[');
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) out.put((byte) ',');
+            write(out, nodes.get(i));
+        }
+        out.put((byte) ']');
+    }
+
+    // opens the node's object, up to its kind
+    private static void kind(ASMWriter out, AST node) {
+        out.put("{\"kind\":\"").put(node.kind).put((byte) '"');
+    }
+
+    // the same for expressions, which print their type first
+    private static void typedKind(ASMWriter out, AST node) {
+        out.put("{\"__type__\":\"").put(node.__type__).put("\",\"kind\":\"").put(node.kind).put((byte) '"');
+    }
+
+    private static void field(ASMWriter out, String name, String value) {
+        out.put(",\"").put(name).put("\":\"").put(String.valueOf(value)).put((byte) '"');
+    }
+
+    private static void child(ASMWriter out, String name, AST node) {
+        out.put(",\"").put(name).put("\":");
+        write(out, node);
+    }
+}
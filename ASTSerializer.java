@@ -0,0 +1,320 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compact binary form of a parsed (not yet type checked) AST.
+ *
+ * Every node is a tag byte followed by its fields in a fixed order, children are written in place and
+ * lists are a count followed by the elements. Strings are an int length and UTF-8 bytes.
+ * Types, method descriptors and the other fields filled in by later phases are not part of the format.
+ *
+ * The bytes depend on nothing but the program's structure, which makes them a cheap key for caches.
+ */
+class ASTSerializer {
+    // bump whenever the layout below changes
+    static final int FORMAT_VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte PROGRAM = 1;
+    private static final byte CLASS = 2;
+    private static final byte FUNCDECL = 3;
+    private static final byte BLOCK = 4;
+    private static final byte VARDECL = 5;
+    private static final byte ASSIGN = 6;
+    private static final byte RETURN = 7;
+    private static final byte IF = 8;
+    private static final byte WHILE = 9;
+    private static final byte PRINTLN = 10;
+    private static final byte READLN = 11;
+    private static final byte UNOP = 12;
+    private static final byte BINOP = 13;
+    private static final byte NULLPTR = 14;
+    private static final byte THISPTR = 15;
+    private static final byte CONSTRUCTION = 16;
+    private static final byte REF = 17;
+    private static final byte FUNCCALL = 18;
+    private static final byte MEMBERACCESS = 19;
+    private static final byte INT = 20;
+    private static final byte BOOL = 21;
+    private static final byte STRING = 22;
+    private static final byte VOID = 23;
+
+    public static byte[] serialize(AST node) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out, node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // can't happen when writing to memory
+        }
+        return bytes.toByteArray();
+    }
+
+    public static AST deserialize(byte[] bytes) throws IOException {
+        return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Checks that read and write agree on every program in dir: each parsed AST is serialized, read back, and must
+     * print the same and serialize to the same bytes. Files that don't parse are skipped.
+     */
+    public static void main(String[] args) throws Exception {
+        File[] files = new File(args[0]).listFiles(File::isFile);
+        Arrays.sort(files);
+
+        int checked = 0;
+        int mismatches = 0;
+        for (File file : files) {
+            AST program;
+            try {
+                FastLexer lexer = FastLexer.map(file.getPath());
+                program = new FastParser(lexer, lexer).parse();
+            } catch (Exception e) {
+                continue;
+            }
+            checked++;
+            byte[] bytes = serialize(program);
+            AST copy = deserialize(bytes);
+            if (copy.toString().equals(program.toString()) && Arrays.equals(serialize(copy), bytes)) continue;
+            System.out.println("MISMATCH " + file);
+            mismatches++;
+        }
+        System.out.println(checked + " files, " + mismatches + " mismatches");
+        if (mismatches > 0) System.exit(1);
+    }
+
+    ///// writing /////
+
+    public static void write(DataOutputStream out, AST node) throws IOException {
+        if (node == null) {
+            out.writeByte(NULL);
+        } else if (node instanceof ProgramAST) {
+            ProgramAST program = (ProgramAST) node;
+            out.writeByte(PROGRAM);
+            write(out, program.mainClass);
+            writeList(out, program.classes);
+        } else if (node instanceof ClassAST) {
+            ClassAST cls = (ClassAST) node;
+            out.writeByte(CLASS);
+            writeString(out, cls.name);
+            writeList(out, cls.members);
+            writeList(out, cls.methods);
+        } else if (node instanceof FuncDeclAST) {
+            FuncDeclAST func = (FuncDeclAST) node;
+            out.writeByte(FUNCDECL);
+            writeString(out, func.returntype);
+            writeString(out, func.name);
+            writeList(out, func.params);
+            write(out, func.body);
+        } else if (node instanceof BlockAST) {
+            BlockAST block = (BlockAST) node;
+            out.writeByte(BLOCK);
+            writeList(out, block.vardecls);
+            writeList(out, block.stmts);
+        } else if (node instanceof VarDeclAST) {
+            VarDeclAST var = (VarDeclAST) node;
+            out.writeByte(VARDECL);
+            writeString(out, var.type);
+            writeString(out, var.name);
+        } else if (node instanceof AssignStmtAST) {
+            AssignStmtAST assign = (AssignStmtAST) node;
+            out.writeByte(ASSIGN);
+            write(out, assign.assignee);
+            write(out, assign.val);
+        } else if (node instanceof ReturnStmtAST) {
+            out.writeByte(RETURN);
+            write(out, ((ReturnStmtAST) node).retval);
+        } else if (node instanceof IfStmtAST) {
+            // the branches never declare variables, so only their statements are written
+            IfStmtAST ifstmt = (IfStmtAST) node;
+            out.writeByte(IF);
+            write(out, ifstmt.condition);
+            writeList(out, ifstmt.successblock.stmts);
+            writeList(out, ifstmt.failureblock.stmts);
+        } else if (node instanceof WhileStmtAST) {
+            WhileStmtAST whilestmt = (WhileStmtAST) node;
+            out.writeByte(WHILE);
+            write(out, whilestmt.condition);
+            writeList(out, whilestmt.block.stmts);
+        } else if (node instanceof PrintlnAST) {
+            out.writeByte(PRINTLN);
+            write(out, ((PrintlnAST) node).output);
+        } else if (node instanceof ReadlnAST) {
+            out.writeByte(READLN);
+            write(out, ((ReadlnAST) node).input);
+        } else if (node instanceof UnOpAST) {
+            UnOpAST unop = (UnOpAST) node;
+            out.writeByte(UNOP);
+            writeString(out, unop.name);
+            write(out, unop.operand);
+        } else if (node instanceof BinOpAST) {
+            BinOpAST binop = (BinOpAST) node;
+            out.writeByte(BINOP);
+            writeString(out, binop.name);
+            write(out, binop.left);
+            write(out, binop.right);
+        } else if (node instanceof NullPtrAST) {
+            out.writeByte(NULLPTR);
+        } else if (node instanceof ThisPtrAST) {
+            out.writeByte(THISPTR);
+        } else if (node instanceof ConstructionAST) {
+            out.writeByte(CONSTRUCTION);
+            writeString(out, ((ConstructionAST) node).classname);
+        } else if (node instanceof RefAST) {
+            out.writeByte(REF);
+            writeString(out, ((RefAST) node).id);
+        } else if (node instanceof FuncCallAST) {
+            FuncCallAST call = (FuncCallAST) node;
+            out.writeByte(FUNCCALL);
+            write(out, call.func);
+            writeList(out, call.args);
+        } else if (node instanceof MemberAccessAST) {
+            MemberAccessAST access = (MemberAccessAST) node;
+            out.writeByte(MEMBERACCESS);
+            write(out, access.obj);
+            writeString(out, access.field);
+        } else if (node instanceof IntAST) {
+            out.writeByte(INT);
+            out.writeInt(((IntAST) node).val);
+        } else if (node instanceof BoolAST) {
+            out.writeByte(BOOL);
+            out.writeBoolean(((BoolAST) node).val);
+        } else if (node instanceof StringAST) {
+            out.writeByte(STRING);
+            writeString(out, ((StringAST) node).val);
+        } else if (node instanceof VoidAST) {
+            out.writeByte(VOID);
+        } else {
+            throw new IllegalArgumentException("Cannot serialize " + node.getClass().getSimpleName() + " node");
+        }
+    }
+
+    private static void writeList(DataOutputStream out, ArrayList<? extends AST> nodes) throws IOException {
+        out.writeInt(nodes.size());
+        for (AST node : nodes) write(out, node);
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    ///// reading /////
+
+    public static AST read(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case PROGRAM: {
+                ProgramAST program = new ProgramAST((ClassAST) read(in), new ArrayList<>());
+                program.classes = readList(in);
+                return program;
+            }
+            case CLASS: {
+                ClassAST cls = new ClassAST(readString(in), new ArrayList<>(), new ArrayList<>());
+                cls.members = readList(in);
+                cls.methods = readList(in);
+                return cls;
+            }
+            case FUNCDECL: {
+                String returntype = readString(in);
+                String name = readString(in);
+                ArrayList<VarDeclAST> params = readList(in);
+                FuncDeclAST func = new FuncDeclAST(returntype, name, new ArrayList<>(), (BlockAST) read(in));
+                func.params = params;
+                return func;
+            }
+            case BLOCK: {
+                BlockAST block = new BlockAST(new ArrayList<>(), new ArrayList<>());
+                block.vardecls = readList(in);
+                block.stmts = readList(in);
+                return block;
+            }
+            case VARDECL: {
+                String type = readString(in);
+                return new VarDeclAST(type, readString(in));
+            }
+            case ASSIGN: {
+                AST assignee = read(in);
+                return new AssignStmtAST(assignee, read(in));
+            }
+            case RETURN:
+                return new ReturnStmtAST(read(in));
+            case IF: {
+                IfStmtAST ifstmt = new IfStmtAST(read(in), new ArrayList<>(), new ArrayList<>());
+                ifstmt.successblock.stmts = readList(in);
+                ifstmt.failureblock.stmts = readList(in);
+                return ifstmt;
+            }
+            case WHILE: {
+                WhileStmtAST whilestmt = new WhileStmtAST(read(in), new ArrayList<>());
+                whilestmt.block.stmts = readList(in);
+                return whilestmt;
+            }
+            case PRINTLN:
+                return new PrintlnAST(read(in));
+            case READLN:
+                return new ReadlnAST((RefAST) read(in));
+            case UNOP: {
+                String name = readString(in);
+                return new UnOpAST(name, read(in));
+            }
+            case BINOP: {
+                String name = readString(in);
+                AST left = read(in);
+                return new BinOpAST(name, left, read(in));
+            }
+            case NULLPTR:
+                return new NullPtrAST();
+            case THISPTR:
+                return new ThisPtrAST();
+            case CONSTRUCTION:
+                return new ConstructionAST(readString(in));
+            case REF:
+                return new RefAST(readString(in));
+            case FUNCCALL: {
+                FuncCallAST call = new FuncCallAST(read(in), new ArrayList<>());
+                call.args = readList(in);
+                return call;
+            }
+            case MEMBERACCESS: {
+                AST obj = read(in);
+                return new MemberAccessAST(obj, readString(in));
+            }
+            case INT:
+                return new IntAST(in.readInt());
+            case BOOL:
+                return new BoolAST(in.readBoolean());
+            case STRING:
+                return new StringAST(readString(in));
+            case VOID:
+                return VoidAST.value;
+            default:
+                throw new IOException("Unknown AST node tag " + tag);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends AST> ArrayList<T> readList(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        ArrayList<T> nodes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) nodes.add((T) read(in));
+        return nodes;
+    }
+
+    // names and type names have to be interned, just like the lexer does
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return Symbols.intern(new String(bytes, StandardCharsets.UTF_8));
+    }
+}
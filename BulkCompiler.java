@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles a whole directory (or a manifest file listing one source path per line) in parallel.
+ * In a directory, only .txt, .pl and .j files are sources, hidden files are skipped.
+ * Every program gets its own .s file next to its source, e.g. tests/codegen.3.txt -> tests/codegen.3.s
+ * Sources that would share a .s file (e.g. foo.j and foo.txt) all fail instead of racing to write it.
+ *
+ * usage: BulkCompiler [-j N] [compiler flags] <directory|manifest>
+ *
+ * Each program runs on its own virtual thread, but at most N (default: number of cores) compile at once.
+ * Compiler flags are the same as the command line driver's, e.g. --cache=DIR serves unchanged programs
+ * from a compile cache that can be kept between runs.
+ * Requires Java 21 (virtual threads).
+ */
+class BulkCompiler {
+    static class FileResult {
+        Path source;
+        long lines;
+        long nanos;
+        Throwable error; // null if the file compiled
+    }
+
+    public static void main(String[] args) throws Exception {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        CompilerOptions options = new CompilerOptions();
+        String target = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-j") && i + 1 < args.length) {
+                parallelism = Integer.parseInt(args[++i]);
+            } else if (args[i].startsWith("--")) {
+                if (!options.applyFlag(args[i])) {
+                    System.err.println("Unknown flag " + args[i]);
+                    System.exit(2);
+                }
+            } else {
+                target = args[i];
+            }
+        }
+        if (target == null || parallelism < 1) {
+            System.err.println("usage: BulkCompiler [-j N] [compiler flags] <directory|manifest>");
+            System.exit(2);
+        }
+
+        List<Path> sources = collectSources(Paths.get(target));
+
+        long start = System.nanoTime();
+        List<FileResult> results = compileAll(sources, parallelism, options);
+        long elapsed = System.nanoTime() - start;
+
+        int failed = 0;
+        for (FileResult result : results) {
+            if (result.error != null) {
+                failed++;
+                System.err.println(result.source + ": " + result.error.toString());
+            }
+        }
+
+        System.out.println(getSummary(results, elapsed, failed));
+        if (failed > 0) System.exit(1);
+    }
+
+    public static List<Path> collectSources(Path target) throws IOException {
+        if (Files.isDirectory(target)) {
+            try (Stream<Path> paths = Files.walk(target)) {
+                return paths.filter(Files::isRegularFile)
+                        .filter(BulkCompiler::isSource)
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        // manifest: one path per line, relative paths are resolved against the manifest's directory
+        Path base = target.toAbsolutePath().getParent();
+        List<Path> sources = new ArrayList<>();
+        for (String line : Files.readAllLines(target, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            sources.add(base.resolve(line));
+        }
+        return sources;
+    }
+
+    private static boolean isSource(Path path) {
+        String name = path.getFileName().toString();
+        return !name.startsWith(".") && (name.endsWith(".txt") || name.endsWith(".pl") || name.endsWith(".j"));
+    }
+
+    public static Path outputPathFor(Path source) {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        return source.resolveSibling(stem + ".s");
+    }
+
+    private static Path outputKey(Path source) {
+        return outputPathFor(source).toAbsolutePath().normalize();
+    }
+
+    public static List<FileResult> compileAll(List<Path> sources, int parallelism, CompilerOptions options) throws Exception {
+        Semaphore permits = new Semaphore(parallelism);
+        List<Future<FileResult>> futures = new ArrayList<>();
+
+        Map<Path, Integer> outputs = new HashMap<>();
+        for (Path source : sources) outputs.merge(outputKey(source), 1, Integer::sum);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path source : sources) {
+                if (outputs.get(outputKey(source)) > 1) {
+                    FileResult result = new FileResult();
+                    result.source = source;
+                    result.error = new IOException("another source also compiles to " + outputPathFor(source));
+                    futures.add(CompletableFuture.completedFuture(result));
+                    continue;
+                }
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return compileOne(source, options);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+
+        List<FileResult> results = new ArrayList<>();
+        for (Future<FileResult> future : futures) results.add(future.get());
+        return results;
+    }
+
+    private static FileResult compileOne(Path source, CompilerOptions options) {
+        FileResult result = new FileResult();
+        result.source = source;
+        long start = System.nanoTime();
+
+        try {
+            String text = new String(Files.readAllBytes(source), StandardCharsets.UTF_8);
+            result.lines = text.lines().count();
+
+            // the compiler writes the file itself
+            CompilerOptions fileOptions = options.copy();
+            fileOptions.asmOutputFile = outputPathFor(source).toString();
+
+            CompilationResult compilation = Compiler.compile(new StringReader(text), fileOptions);
+            if (!compilation.isSuccessful()) result.error = compilation.error;
+        } catch (Throwable e) {
+            // e.g. a StackOverflowError on deeply nested input, it only fails this file
+            result.error = e;
+        }
+
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    public static String getSummary(List<FileResult> results, long elapsedNanos, int failed) {
+        long lines = 0;
+        ArrayList<Long> latencies = new ArrayList<>();
+        for (FileResult result : results) {
+            lines += result.lines;
+            if (result.error == null) latencies.add(result.nanos); // failures stop early, they would skew the latencies
+        }
+        Collections.sort(latencies);
+
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("compiled %d files (%d failed), %d lines in %.3f s\n", results.size(), failed, lines, seconds));
+        sb.append(String.format("throughput: %.1f files/s, %.1f lines/s\n", results.size() / seconds, lines / seconds));
+        sb.append(String.format("latency per compiled file: p50 %.3f ms, p99 %.3f ms", percentile(latencies, 50) / 1e6, percentile(latencies, 99) / 1e6));
+        return sb.toString();
+    }
+
+    // nearest-rank percentile of an already sorted list
+    private static long percentile(List<Long> sorted, int p) {
+        if (sorted.isEmpty()) return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.size());
+        return sorted.get(Math.max(rank, 1) - 1);
+    }
+}
@@ -1,12 +1,13 @@
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.AbstractMap;
 
 class ClassDescriptors {
     public HashSet<String> primitiveTypes = new HashSet<>();
-    public HashMap<String, ClassDescriptor> classes = new HashMap<>();
+    public LinkedHashMap<String, ClassDescriptor> classes = new LinkedHashMap<>(); // in declaration order
+    public HashSet<String> lookups = null; // if not null, every class looked up is recorded here (see recordingView)
 
     public ClassDescriptors() {
         primitiveTypes.add("Int");
@@ -16,6 +17,7 @@ class ClassDescriptors {
     }
 
     public boolean has(String type) {
+        if (lookups != null) lookups.add(type);
         return primitiveTypes.contains(type) || classes.containsKey(type);
     }
 
@@ -28,9 +30,19 @@ class ClassDescriptors {
     }
 
     public ClassDescriptor getClassDescriptor(String type) {
+        if (lookups != null) lookups.add(type);
         return classes.get(type);
     }
 
+    // a view sharing the same descriptors that records which classes are looked up through it
+    public ClassDescriptors recordingView() {
+        ClassDescriptors view = new ClassDescriptors();
+        view.primitiveTypes = this.primitiveTypes;
+        view.classes = this.classes;
+        view.lookups = new HashSet<>();
+        return view;
+    }
+
     public void debugPrint() {
         System.out.println("START ClassDescriptors Debug Print");
         for (Map.Entry<String, ClassDescriptor> entry : classes.entrySet()) {
@@ -54,8 +66,8 @@ class ClassDescriptors {
 
 class ClassDescriptor {
     public String name;
-    public HashMap<String, String> fields = new HashMap<>(); // maps each field name to its type
-    public HashMap<String, MethodDescriptor> methods = new HashMap<>(); // maps each method name to its descriptor object
+    public LinkedHashMap<String, String> fields = new LinkedHashMap<>(); // maps each field name to its type, in declaration order
+    public LinkedHashMap<String, MethodDescriptor> methods = new LinkedHashMap<>(); // maps each method name to its descriptor object, in declaration order
 
     public ClassDescriptor(String name) {
         this.name = name;
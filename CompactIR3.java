@@ -0,0 +1,316 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * A program's IR3 packed into parallel primitive arrays, instead of one object per instruction, see --compact-ir.
+ *
+ * Each instruction is an opcode, an lvalue and up to three more ints. Variables are indices into a table of every
+ * variable the program uses (its name and symbol table entry), and op names, fields, function names and types are
+ * indices into a table of constants. The few instructions that aren't packed (function starts and ends, readln,
+ * cached IR3) are kept as they are.
+ *
+ * get materialises an instruction as an ordinary IR3 object, a view the caller drops once it is done with it,
+ * so the list can be lowered and printed like any other. Views are new objects each time, changing one doesn't
+ * change the list.
+ */
+class CompactIR3 extends AbstractList<IR3> {
+    private static final byte OBJECT = 0;
+    private static final byte LABEL = 1; // a: label
+    private static final byte GOTO = 2; // a: label, b: condition or -1
+    private static final byte CALL = 3; // a: name, b: return type, c: start of the arguments in args
+    private static final byte PRINT = 4; // a: output, b: 1 if it is an Int
+    private static final byte CONSTRUCTION = 5; // a: class name, b: size
+    private static final byte RETURN = 6; // a: return value or -1
+    private static final byte ASSIGNMENT = 7; // a: value
+    private static final byte LABEL_ASSIGNMENT = 8; // a: label
+    private static final byte MEMBER_ASSIGNMENT = 9; // lvalue is the object, a: field, b: value, c: offset
+    private static final byte MEMBER_ACCESS = 10; // a: object, b: field, c: offset
+    private static final byte UNOP = 11; // a: op, b: operand
+    private static final byte BINOP = 12; // a: op, b: left, c: right
+    private static final byte INT = 13; // a: value
+    private static final byte BOOL = 14; // a: 1 if true
+
+    private int size = 0;
+    private byte[] opcodes = new byte[256];
+    private int[] lvalues = new int[256]; // -1 if there is none
+    private int[] a = new int[256];
+    private int[] b = new int[256];
+    private int[] c = new int[256];
+
+    // each call's argument count followed by its arguments
+    private int[] args = new int[64];
+    private int argsSize = 0;
+
+    // one variable per symbol table entry, names are only unique within a method
+    private final ArrayList<String> names = new ArrayList<>();
+    private final ArrayList<SymbolTableEntry> entries = new ArrayList<>();
+    // only the current method's variables, most are temporaries that no other method uses
+    private final IdentityHashMap<SymbolTableEntry, Integer> variableIds = new IdentityHashMap<>();
+    private final HashMap<String, Integer> unresolvedIds = new HashMap<>(); // names with no entry, such as NO_L_VALUE
+
+    private final ArrayList<Object> constants = new ArrayList<>();
+    private final HashMap<Object, Integer> constantIds = new HashMap<>();
+    private final ArrayList<IR3> objects = new ArrayList<>();
+
+    // generates the program's IR3 method by method, so only one method's instruction objects exist at a time
+    public static CompactIR3 generate(CompilationContext ctx, ProgramAST program) {
+        ArrayList<ClassAST> classes = new ArrayList<>();
+        classes.add(program.mainClass);
+        classes.addAll(program.classes);
+
+        CompactIR3 irs = new CompactIR3();
+        for (ClassAST cls : classes) {
+            for (FuncDeclAST method : cls.methods) {
+                method.classname = cls.name;
+                for (IR3 ir : method.genIR(ctx)) irs.add(ir);
+            }
+        }
+        irs.trimToSize();
+        return irs;
+    }
+
+    // drops the spare capacity, for once nothing more will be added
+    public void trimToSize() {
+        opcodes = Arrays.copyOf(opcodes, size);
+        lvalues = Arrays.copyOf(lvalues, size);
+        a = Arrays.copyOf(a, size);
+        b = Arrays.copyOf(b, size);
+        c = Arrays.copyOf(c, size);
+        args = Arrays.copyOf(args, argsSize);
+        names.trimToSize();
+        entries.trimToSize();
+        objects.trimToSize();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(IR3 ir) {
+        if (ir instanceof LabelIR3) {
+            append(LABEL, null, null, ((LabelIR3) ir).label, 0, 0);
+        } else if (ir instanceof GotoIR3) {
+            GotoIR3 go = (GotoIR3) ir;
+            int condition = go.condition == null ? -1 : variable(go.condition, go.conditionEntry);
+            append(GOTO, null, null, go.label, condition, 0);
+        } else if (ir instanceof FunctionCallIR3) {
+            FunctionCallIR3 call = (FunctionCallIR3) ir;
+            int start = argsSize;
+            pushArg(call.args.size());
+            for (int i = 0; i < call.args.size(); i++) pushArg(variable(call.args.get(i), call.argEntries.get(i)));
+            append(CALL, call.lvalue, call.lvalueEntry, constant(call.name), constant(call.returntype), start);
+        } else if (ir instanceof PrintIR3) {
+            PrintIR3 print = (PrintIR3) ir;
+            append(PRINT, null, null, variable(print.output, print.outputEntry), print.isInt ? 1 : 0, 0);
+        } else if (ir instanceof ConstructionIR3) {
+            ConstructionIR3 construction = (ConstructionIR3) ir;
+            append(CONSTRUCTION, construction.lvalue, construction.lvalueEntry, constant(construction.cls), construction.size, 0);
+        } else if (ir instanceof ReturnIR3) {
+            ReturnIR3 ret = (ReturnIR3) ir;
+            append(RETURN, null, null, ret.retval == null ? -1 : variable(ret.retval, ret.retvalEntry), 0, 0);
+        } else if (ir instanceof AssignmentIR3) {
+            AssignmentIR3 assignment = (AssignmentIR3) ir;
+            append(ASSIGNMENT, assignment.lvalue, assignment.lvalueEntry, variable(assignment.val, assignment.valEntry), 0, 0);
+        } else if (ir instanceof LabelAssignmentIR3) {
+            LabelAssignmentIR3 assignment = (LabelAssignmentIR3) ir;
+            append(LABEL_ASSIGNMENT, assignment.lvalue, assignment.lvalueEntry, assignment.label, 0, 0);
+        } else if (ir instanceof MemberAssignmentIR3) {
+            MemberAssignmentIR3 assignment = (MemberAssignmentIR3) ir;
+            append(MEMBER_ASSIGNMENT, assignment.lvalue, assignment.lvalueEntry, constant(assignment.field),
+                    variable(assignment.val, assignment.valEntry), assignment.offset);
+        } else if (ir instanceof MemberAccessIR3) {
+            MemberAccessIR3 access = (MemberAccessIR3) ir;
+            append(MEMBER_ACCESS, access.lvalue, access.lvalueEntry, variable(access.obj, access.objEntry),
+                    constant(access.field), access.offset);
+        } else if (ir instanceof UnOpIR3) {
+            UnOpIR3 op = (UnOpIR3) ir;
+            append(UNOP, op.lvalue, op.lvalueEntry, constant(op.op), variable(op.operand, op.operandEntry), 0);
+        } else if (ir instanceof BinOpIR3) {
+            BinOpIR3 op = (BinOpIR3) ir;
+            append(BINOP, op.lvalue, op.lvalueEntry, constant(op.op), variable(op.left, op.leftEntry),
+                    variable(op.right, op.rightEntry));
+        } else if (ir instanceof IntIR3) {
+            IntIR3 value = (IntIR3) ir;
+            append(INT, value.lvalue, value.lvalueEntry, value.val, 0, 0);
+        } else if (ir instanceof BoolIR3) {
+            BoolIR3 value = (BoolIR3) ir;
+            append(BOOL, value.lvalue, value.lvalueEntry, value.val ? 1 : 0, 0, 0);
+        } else {
+            objects.add(ir);
+            append(OBJECT, null, null, objects.size() - 1, 0, 0);
+            if (ir instanceof FunctionEndIR3) {
+                variableIds.clear();
+                unresolvedIds.clear();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public IR3 get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size);
+        switch (opcodes[i]) {
+            case LABEL: {
+                LabelIR3 ir = new LabelIR3();
+                ir.label = a[i];
+                return ir;
+            }
+            case GOTO: {
+                GotoIR3 ir = new GotoIR3(a[i]);
+                if (b[i] >= 0) {
+                    ir.condition = names.get(b[i]);
+                    ir.conditionEntry = entries.get(b[i]);
+                }
+                return ir;
+            }
+            case CALL: {
+                FunctionCallIR3 ir = lvalue(new FunctionCallIR3(), i);
+                ir.name = (String) constants.get(a[i]);
+                ir.returntype = (Type) constants.get(b[i]);
+                ir.args = new ArrayList<>();
+                int count = args[c[i]];
+                for (int j = 1; j <= count; j++) {
+                    ir.args.add(names.get(args[c[i] + j]));
+                    ir.argEntries.add(entries.get(args[c[i] + j]));
+                }
+                return ir;
+            }
+            case PRINT: {
+                PrintIR3 ir = new PrintIR3();
+                ir.output = names.get(a[i]);
+                ir.outputEntry = entries.get(a[i]);
+                ir.isInt = b[i] == 1;
+                return ir;
+            }
+            case CONSTRUCTION: {
+                ConstructionIR3 ir = lvalue(new ConstructionIR3(), i);
+                ir.cls = (String) constants.get(a[i]);
+                ir.size = b[i];
+                return ir;
+            }
+            case RETURN: {
+                ReturnIR3 ir = new ReturnIR3();
+                if (a[i] >= 0) {
+                    ir.retval = names.get(a[i]);
+                    ir.retvalEntry = entries.get(a[i]);
+                }
+                return ir;
+            }
+            case ASSIGNMENT: {
+                AssignmentIR3 ir = lvalue(new AssignmentIR3(), i);
+                ir.val = names.get(a[i]);
+                ir.valEntry = entries.get(a[i]);
+                return ir;
+            }
+            case LABEL_ASSIGNMENT: {
+                LabelAssignmentIR3 ir = lvalue(new LabelAssignmentIR3(), i);
+                ir.label = a[i];
+                return ir;
+            }
+            case MEMBER_ASSIGNMENT: {
+                MemberAssignmentIR3 ir = lvalue(new MemberAssignmentIR3(), i);
+                ir.field = (String) constants.get(a[i]);
+                ir.val = names.get(b[i]);
+                ir.valEntry = entries.get(b[i]);
+                ir.offset = c[i];
+                return ir;
+            }
+            case MEMBER_ACCESS: {
+                MemberAccessIR3 ir = lvalue(new MemberAccessIR3(), i);
+                ir.obj = names.get(a[i]);
+                ir.objEntry = entries.get(a[i]);
+                ir.field = (String) constants.get(b[i]);
+                ir.offset = c[i];
+                return ir;
+            }
+            case UNOP: {
+                UnOpIR3 ir = lvalue(new UnOpIR3(), i);
+                ir.op = (String) constants.get(a[i]);
+                ir.operand = names.get(b[i]);
+                ir.operandEntry = entries.get(b[i]);
+                return ir;
+            }
+            case BINOP: {
+                BinOpIR3 ir = lvalue(new BinOpIR3(), i);
+                ir.op = (String) constants.get(a[i]);
+                ir.left = names.get(b[i]);
+                ir.leftEntry = entries.get(b[i]);
+                ir.right = names.get(c[i]);
+                ir.rightEntry = entries.get(c[i]);
+                return ir;
+            }
+            case INT: {
+                IntIR3 ir = lvalue(new IntIR3(), i);
+                ir.val = a[i];
+                return ir;
+            }
+            case BOOL: {
+                BoolIR3 ir = lvalue(new BoolIR3(), i);
+                ir.val = a[i] == 1;
+                return ir;
+            }
+            default:
+                return objects.get(a[i]);
+        }
+    }
+
+    private <T extends IR3> T lvalue(T ir, int i) {
+        if (lvalues[i] >= 0) {
+            ir.lvalue = names.get(lvalues[i]);
+            ir.lvalueEntry = entries.get(lvalues[i]);
+        }
+        return ir;
+    }
+
+    private void append(byte opcode, String lvalue, SymbolTableEntry lvalueEntry, int a, int b, int c) {
+        if (size == opcodes.length) {
+            int capacity = Math.max(size * 2, 16);
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            lvalues = Arrays.copyOf(lvalues, capacity);
+            this.a = Arrays.copyOf(this.a, capacity);
+            this.b = Arrays.copyOf(this.b, capacity);
+            this.c = Arrays.copyOf(this.c, capacity);
+        }
+        opcodes[size] = opcode;
+        lvalues[size] = lvalue == null ? -1 : variable(lvalue, lvalueEntry);
+        this.a[size] = a;
+        this.b[size] = b;
+        this.c[size] = c;
+        size++;
+    }
+
+    private void pushArg(int value) {
+        if (argsSize == args.length) args = Arrays.copyOf(args, Math.max(argsSize * 2, 16));
+        args[argsSize++] = value;
+    }
+
+    private int variable(String name, SymbolTableEntry entry) {
+        Integer id = entry != null ? variableIds.get(entry) : unresolvedIds.get(name);
+        if (id != null) return id;
+
+        id = names.size();
+        names.add(name);
+        entries.add(entry);
+        if (entry != null) {
+            variableIds.put(entry, id);
+        } else {
+            unresolvedIds.put(name, id);
+        }
+        return id;
+    }
+
+    private int constant(Object value) {
+        Integer id = constantIds.get(value);
+        if (id != null) return id;
+
+        id = constants.size();
+        constants.add(value);
+        constantIds.put(value, id);
+        return id;
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content-addressed cache of whole compiles: maps a hash of (compiler output version, options, source text)
+ * to the generated assembly. Since the compiler is deterministic, a hit is byte-identical to recompiling.
+ *
+ * Entries live in DIR/ab/abcdef....s (the first two hex digits fan out the directory) and are written
+ * atomically, so any number of compilers (e.g. the bulk compiler's workers) can share one cache directory.
+ */
+class CompileCache {
+    private final Path dir;
+
+    public CompileCache(String dir) {
+        this.dir = Paths.get(dir);
+    }
+
+    public static String key(String optionsKey, String source) {
+        return hash(Compiler.OUTPUT_VERSION + "\n" + optionsKey + "\n" + source);
+    }
+
+    private Path pathFor(String key) {
+        return dir.resolve(key.substring(0, 2)).resolve(key + ".s");
+    }
+
+    // a missing or unreadable entry is simply a cache miss
+    public String lookup(String key) {
+        Path path = pathFor(key);
+        if (!Files.exists(path)) return null;
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // failing to store an entry only costs a recompile next time
+    public void store(String key, String asm) {
+        Path path = pathFor(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), key, ".tmp");
+            Files.write(tmp, asm.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Cannot write compile cache entry " + path + ": " + e.getMessage());
+        }
+    }
+
+    public static String hash(String text) {
+        return hash(text, new byte[0]);
+    }
+
+    // hash of a text (such as a version) followed by binary data
+    public static String hash(String text, byte[] data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest(data)) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // every JVM ships SHA-256
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long running compile server (jlite-server) listening on a local Unix domain socket.
+ * Keeps one JVM (and its JIT-compiled compiler and parse tables) warm across many compiles.
+ *
+ * Protocol, one compile per connection:
+ *   request  = zero or more option lines, an empty line, then the source text until the client shuts down its output
+ *   response = "OK\n" followed by the requested output, or "ERROR\n" followed by the diagnostics
+ *
+ * An ERROR body holds the lexer's and parser's messages for that request, then the error itself.
+ *
+ * Options are "asm" (the default when none are given), "ir3" and "ast".
+ * Their output is concatenated in the order ast, ir3, asm.
+ *
+ * Requires Java 21 (virtual threads).
+ */
+class CompileServer {
+    // compiled once on startup so that the first real request doesn't pay for class loading and parse table setup
+    private static final String WARMUP_PROGRAM = "class Main { Void main() { println(1); return; } }";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: CompileServer <socket path>");
+            System.exit(2);
+        }
+        Path socketPath = Paths.get(args[0]);
+
+        Compiler.compile(new StringReader(WARMUP_PROGRAM));
+
+        Files.deleteIfExists(socketPath);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(socketPath);
+            } catch (IOException e) {
+                // nothing more we can do while shutting down
+            }
+        }));
+        System.out.println("jlite-server listening on " + socketPath);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (true) {
+                SocketChannel client = server.accept();
+                executor.submit(() -> handle(client));
+            }
+        }
+    }
+
+    private static void handle(SocketChannel client) {
+        try (SocketChannel channel = client) {
+            InputStream in = Channels.newInputStream(channel);
+            OutputStream out = Channels.newOutputStream(channel);
+            String request = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            String response;
+            try {
+                response = respond(request);
+            } catch (Throwable e) {
+                // e.g. a StackOverflowError on deeply nested input, the client still gets an answer
+                response = "ERROR\n" + e + "\n";
+            }
+            out.write(response.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("jlite-server: " + e.getMessage());
+        }
+    }
+
+    public static String respond(String request) {
+        // split off the option lines
+        HashSet<String> options = new HashSet<>();
+        int pos = 0;
+        while (true) {
+            int eol = request.indexOf('\n', pos);
+            if (eol < 0) return "ERROR\nMalformed request: expected an empty line before the source text\n";
+            String line = request.substring(pos, eol).trim();
+            pos = eol + 1;
+            if (line.isEmpty()) break;
+            if (!line.equals("asm") && !line.equals("ir3") && !line.equals("ast")) return "ERROR\nUnknown option " + line + "\n";
+            options.add(line);
+        }
+        if (options.isEmpty()) options.add("asm");
+
+        // every request gets its own diagnostics, concurrent compiles would interleave them on stdout and stderr
+        ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+        CompilerOptions compilerOptions = new CompilerOptions();
+        compilerOptions.diagnostics = new PrintStream(diagnostics, true, StandardCharsets.UTF_8);
+        CompilationResult result = Compiler.compile(new StringReader(request.substring(pos)), compilerOptions);
+        if (!result.isSuccessful()) return "ERROR\n" + diagnostics.toString(StandardCharsets.UTF_8) + result.error.toString() + "\n";
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("OK\n");
+        if (options.contains("ast")) sb.append(result.program.toString() + "\n");
+        if (options.contains("ir3")) sb.append(IR3.getIR3String(result.irs));
+        if (options.contains("asm")) sb.append(result.asm);
+        return sb.toString();
+    }
+}
+
+/**
+ * Minimal client for CompileServer.
+ * Prints the response body to stdout, or the diagnostic to stderr with a non-zero exit code.
+ */
+class CompileClient {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: CompileClient <socket path> <source file> [asm|ir3|ast]...");
+            System.exit(2);
+        }
+
+        StringBuilder request = new StringBuilder();
+        for (int i = 2; i < args.length; i++) request.append(args[i] + "\n");
+        request.append("\n");
+        request.append(new String(Files.readAllBytes(Paths.get(args[1])), StandardCharsets.UTF_8));
+
+        String response;
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(args[0]))) {
+            channel.write(StandardCharsets.UTF_8.encode(request.toString()));
+            channel.shutdownOutput();
+            response = new String(Channels.newInputStream(channel).readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        int eol = response.indexOf('\n');
+        String status = eol < 0 ? response : response.substring(0, eol);
+        String body = eol < 0 ? "" : response.substring(eol + 1);
+        if (status.equals("OK")) {
+            System.out.print(body);
+        } else {
+            System.err.print(body);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Map;
+
+import com.sun.management.ThreadMXBean;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Wall time, allocation and output size of each phase of one compilation, collected with the --stats=json flag.
+ *
+ * Every phase is also a CompilePhaseEvent, so a JFR recording (e.g. java -XX:StartFlightRecording ...) shows them
+ * whether or not stats are collected. When neither is on, a phase costs two nanoTime calls. Events are only made
+ * once JFR is running, registering the event class with JFR takes longer than a small compile.
+ *
+ * Allocation is summed over all live threads, so it includes the worker threads of the parallel modes
+ * (and anything else the JVM runs at the time, such as a pipelined lexer or other compilations in a server).
+ */
+class CompileStats {
+    // initialised on first use, the management classes are slow to load
+    private static class Threads {
+        static final ThreadMXBean BEAN = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    static class PhaseStats {
+        public final String name;
+        public final long wallNanos;
+        public final long allocatedBytes;
+        public final long count; // what was counted depends on the phase, see Compiler
+
+        PhaseStats(String name, long wallNanos, long allocatedBytes, long count) {
+            this.name = name;
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.count = count;
+        }
+    }
+
+    static class MethodStats {
+        public final String name;
+        public final int temps; // IR3 temporaries left in the method's symbol table
+        public final int frameSize; // SymbolTable.size
+
+        MethodStats(String name, int temps, int frameSize) {
+            this.name = name;
+            this.temps = temps;
+            this.frameSize = frameSize;
+        }
+    }
+
+    public final ArrayList<PhaseStats> phases = new ArrayList<>();
+    public final ArrayList<MethodStats> methods = new ArrayList<>();
+    // totals, -1 if the compilation didn't get as far or never held them all at once (streamed)
+    public long astNodes = -1;
+    public long ir3Instructions = -1;
+    public long armInstructions = -1;
+
+    /**
+     * A phase that has started, see begin. end it once the phase is done.
+     */
+    static class Phase {
+        private final CompileStats stats;
+        private final String name;
+        private final CompilePhaseEvent event; // null if JFR isn't running
+        private final boolean recording;
+        private final long allocatedAtStart;
+        private final long start;
+
+        private Phase(CompileStats stats, String name) {
+            this.stats = stats;
+            this.name = name;
+            this.event = FlightRecorder.isInitialized() ? new CompilePhaseEvent() : null;
+            this.recording = stats != null || (event != null && event.isEnabled());
+            this.allocatedAtStart = recording ? allocatedBytes() : 0;
+            if (event != null) event.begin();
+            this.start = System.nanoTime();
+        }
+
+        // whether the phase's counts are wanted, so counting that costs time can be skipped
+        public boolean isRecording() {
+            return recording;
+        }
+
+        public void end(long count) {
+            long wallNanos = System.nanoTime() - start;
+            if (event != null) event.end();
+            if (!recording) return;
+            long allocated = allocatedBytes() - allocatedAtStart;
+
+            if (event != null && event.shouldCommit()) {
+                event.phase = name;
+                event.allocatedBytes = allocated;
+                event.count = count;
+                event.commit();
+            }
+            if (stats != null) stats.phases.add(new PhaseStats(name, wallNanos, allocated, count));
+        }
+    }
+
+    // stats is null if they aren't being collected, the phase is then only a JFR event
+    public static Phase begin(CompileStats stats, String name) {
+        return new Phase(stats, name);
+    }
+
+    static long allocatedBytes() {
+        long total = 0;
+        for (long bytes : Threads.BEAN.getThreadAllocatedBytes(Threads.BEAN.getAllThreadIds())) {
+            if (bytes > 0) total += bytes; // -1 for threads that ended in the meantime
+        }
+        return total;
+    }
+
+    // records the temporaries and frame size of every method in the symbol tables
+    public void addMethods(SymbolTables symbolTables) {
+        for (Map.Entry<String, SymbolTable> p : symbolTables.tables.entrySet()) addMethod(p.getKey(), p.getValue());
+    }
+
+    public void addMethod(String name, SymbolTable table) {
+        int temps = 0;
+        for (String local : table.locals.keySet()) {
+            if (local.startsWith("_tmp")) temps++; // see CompilationContext.mkVar
+        }
+        methods.add(new MethodStats(name, temps, table.size));
+    }
+
+    public static long countNodes(AST node) {
+        if (node instanceof ProgramAST) {
+            ProgramAST program = (ProgramAST) node;
+            return 1 + countNodes(program.mainClass) + countNodes(program.classes);
+        } else if (node instanceof ClassAST) {
+            ClassAST cls = (ClassAST) node;
+            return 1 + countNodes(cls.members) + countNodes(cls.methods);
+        } else if (node instanceof FuncDeclAST) {
+            FuncDeclAST func = (FuncDeclAST) node;
+            return 1 + countNodes(func.params) + countNodes(func.body);
+        } else if (node instanceof BlockAST) {
+            BlockAST block = (BlockAST) node;
+            return 1 + countNodes(block.vardecls) + countNodes(block.stmts);
+        } else if (node instanceof AssignStmtAST) {
+            AssignStmtAST assign = (AssignStmtAST) node;
+            return 1 + countNodes(assign.assignee) + countNodes(assign.val);
+        } else if (node instanceof ReturnStmtAST) {
+            return 1 + countNodes(((ReturnStmtAST) node).retval);
+        } else if (node instanceof IfStmtAST) {
+            IfStmtAST stmt = (IfStmtAST) node;
+            return 1 + countNodes(stmt.condition) + countNodes(stmt.successblock) + countNodes(stmt.failureblock);
+        } else if (node instanceof WhileStmtAST) {
+            WhileStmtAST stmt = (WhileStmtAST) node;
+            return 1 + countNodes(stmt.condition) + countNodes(stmt.block);
+        } else if (node instanceof PrintlnAST) {
+            return 1 + countNodes(((PrintlnAST) node).output);
+        } else if (node instanceof ReadlnAST) {
+            return 1 + countNodes(((ReadlnAST) node).input);
+        } else if (node instanceof UnOpAST) {
+            return 1 + countNodes(((UnOpAST) node).operand);
+        } else if (node instanceof BinOpAST) {
+            BinOpAST op = (BinOpAST) node;
+            return 1 + countNodes(op.left) + countNodes(op.right);
+        } else if (node instanceof FuncCallAST) {
+            FuncCallAST call = (FuncCallAST) node;
+            return 1 + countNodes(call.func) + countNodes(call.args);
+        } else if (node instanceof MemberAccessAST) {
+            return 1 + countNodes(((MemberAccessAST) node).obj);
+        }
+        return node == null ? 0 : 1;
+    }
+
+    private static long countNodes(ArrayList<? extends AST> nodes) {
+        long count = 0;
+        for (AST node : nodes) count += countNodes(node);
+        return count;
+    }
+
+    public String toJSON() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"phases\":[");
+        for (int i = 0; i < phases.size(); i++) {
+            PhaseStats phase = phases.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"name\":\"").append(phase.name).append('"');
+            sb.append(",\"wallNanos\":").append(phase.wallNanos);
+            sb.append(",\"allocatedBytes\":").append(phase.allocatedBytes);
+            sb.append(",\"count\":").append(phase.count).append('}');
+        }
+        sb.append("],\"astNodes\":").append(astNodes);
+        sb.append(",\"ir3Instructions\":").append(ir3Instructions);
+        sb.append(",\"armInstructions\":").append(armInstructions);
+        sb.append(",\"methods\":[");
+        for (int i = 0; i < methods.size(); i++) {
+            MethodStats method = methods.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"name\":\"").append(method.name).append('"');
+            sb.append(",\"temps\":").append(method.temps);
+            sb.append(",\"frameSize\":").append(method.frameSize).append('}');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+}
+
+@Name("jlite.CompilePhase")
+@Label("Compile Phase")
+@Category("jlite")
+@Description("One phase of a compilation")
+class CompilePhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Count")
+    @Description("AST nodes, IR3 or ARM instructions, ... depending on the phase")
+    long count;
+}
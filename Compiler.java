@@ -0,0 +1,469 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import java_cup.runtime.ComplexSymbolFactory;
+import java_cup.runtime.Scanner;
+import java_cup.runtime.ScannerBuffer;
+
+/**
+ * Holds all of the state belonging to a single compilation.
+ * Nothing in here is shared between compilations, so any number of them may run
+ * back-to-back or concurrently within the same JVM.
+ */
+class CompilationContext {
+    public SymbolTables symbolTables = new SymbolTables();
+    public ClassTables classTables = new ClassTables();
+    public DataTable dataTable = new DataTable();
+
+    private int labelCount = 0;
+    private int variableCount = 0;
+
+    public Integer mkLabel() {
+        return labelCount++;
+    }
+
+    public int getLabelCount() {
+        return labelCount;
+    }
+
+    // hands out a contiguous block of n labels and returns the first one
+    public int reserveLabels(int n) {
+        int base = labelCount;
+        labelCount += n;
+        return base;
+    }
+
+    /**
+     * Creates a context for generating a single method or class on its own.
+     * Class tables are shared (they are read-only by then), but symbol tables, data table
+     * and the label/temp counters are local to the unit.
+     */
+    public CompilationContext forUnit() {
+        CompilationContext unitCtx = new CompilationContext();
+        unitCtx.classTables = this.classTables;
+        unitCtx.dataTable.printIntFormatStrLabel = this.dataTable.printIntFormatStrLabel;
+        return unitCtx;
+    }
+
+    /**
+     * Merges a unit created with forUnit back into this context.
+     * The unit's labels get the next contiguous block of labels, its string data is added under the shifted labels
+     * and its symbol tables are adopted. Returns the offset the caller has to shift the unit's IR3/ARM labels by.
+     */
+    public int absorb(CompilationContext unitCtx) {
+        return absorb(unitCtx.getLabelCount(), unitCtx.dataTable.data, unitCtx.symbolTables.tables);
+    }
+
+    public int absorb(int unitLabelCount, Map<Integer, DataTableEntry> unitData, Map<String, SymbolTable> unitSymbolTables) {
+        int base = reserveLabels(unitLabelCount);
+
+        for (Map.Entry<Integer, DataTableEntry> entry : unitData.entrySet()) {
+            dataTable.create(entry.getKey() + base, entry.getValue());
+        }
+
+        symbolTables.tables.putAll(unitSymbolTables);
+        return base;
+    }
+
+    public String mkVar(Type type) {
+        String varName = "_tmp" + variableCount++;
+        symbolTables.currentTable.setLocal(varName, type);
+        return varName;
+    }
+}
+
+/**
+ * Controls the optional side effects of a compilation.
+ * Everything is off by default; the command line driver turns on what it used to print unconditionally.
+ */
+class CompilerOptions {
+    public boolean printSymbolTables = false;
+    public boolean printClassTables = false;
+    public boolean printIR3 = false;
+    public boolean printASM = false;
+    public boolean printAST = false; // the parsed and type checked AST as JSON, streamed to stdout
+    public String asmOutputFile = null; // no file is written if null
+    public boolean parallelTypeCheck = false;
+    public boolean parallelCodegen = false;
+    public String incrementalCacheDir = null; // incremental compilation is off if null
+    public String compileCacheDir = null; // the whole-compile cache is off if null
+    public boolean streamOutput = false; // write the assembly to asmOutputFile method by method, without keeping it in memory
+    public boolean fastLexer = false; // lex with FastLexer instead of the JFlex lexer, the output is the same
+    public boolean pipelinedLexer = false; // run the lexer on its own thread, ahead of the parser
+    public boolean fastParser = false; // parse with FastParser instead of the CUP parser, the AST is the same
+    public boolean printStats = false; // time every phase and print a JSON report to stderr, see CompileStats
+    public boolean compactIR = false; // keep the IR3 packed in a CompactIR3, only the sequential backend uses it
+    public boolean fusedAnalysis = false; // see FusedFrontend, type checking is only fused with the sequential backend
+    public PrintStream diagnostics = null; // lexer and parser errors, if null the lexers print them to stdout and the parsers to stderr
+
+    public static CompilerOptions verbose() {
+        CompilerOptions options = new CompilerOptions();
+        options.printSymbolTables = true;
+        options.printClassTables = true;
+        options.printIR3 = true;
+        options.printASM = true;
+        options.printAST = true;
+        return options;
+    }
+
+    public CompilerOptions copy() {
+        CompilerOptions copy = new CompilerOptions();
+        copy.printSymbolTables = printSymbolTables;
+        copy.printClassTables = printClassTables;
+        copy.printIR3 = printIR3;
+        copy.printASM = printASM;
+        copy.printAST = printAST;
+        copy.asmOutputFile = asmOutputFile;
+        copy.parallelTypeCheck = parallelTypeCheck;
+        copy.parallelCodegen = parallelCodegen;
+        copy.incrementalCacheDir = incrementalCacheDir;
+        copy.compileCacheDir = compileCacheDir;
+        copy.streamOutput = streamOutput;
+        copy.fastLexer = fastLexer;
+        copy.pipelinedLexer = pipelinedLexer;
+        copy.fastParser = fastParser;
+        copy.printStats = printStats;
+        copy.compactIR = compactIR;
+        copy.fusedAnalysis = fusedAnalysis;
+        copy.diagnostics = diagnostics;
+        return copy;
+    }
+
+    /**
+     * The part of the options that can change the generated assembly, for keying the compile cache.
+     * The parallel and incremental modes are left out on purpose: they produce exactly the same output.
+     */
+    public String outputKey() {
+        return "asm";
+    }
+
+    // a cache hit only yields the assembly, so compiles that dump anything else always run in full
+    // (as do streamed compiles, which never hold the whole assembly in memory)
+    public boolean canUseCompileCache() {
+        return compileCacheDir != null && !printSymbolTables && !printClassTables && !printIR3 && !printAST && !printStats && !streamOutput;
+    }
+
+    // returns false if the command line flag is not recognised
+    public boolean applyFlag(String flag) {
+        switch (flag) {
+            case "--parallel-typecheck":
+                parallelTypeCheck = true;
+                return true;
+            case "--parallel-codegen":
+                parallelCodegen = true;
+                return true;
+            case "--stream":
+                // these dumps need the whole program's IR3, assembly or symbol tables at once
+                streamOutput = true;
+                printSymbolTables = false;
+                printIR3 = false;
+                printASM = false;
+                return true;
+            case "--fast-lexer":
+                fastLexer = true;
+                return true;
+            case "--pipelined-lexer":
+                pipelinedLexer = true;
+                return true;
+            case "--fast-parser":
+                fastParser = true;
+                return true;
+            case "--stats=json":
+                printStats = true;
+                return true;
+            case "--compact-ir":
+                compactIR = true;
+                return true;
+            case "--fused-analysis":
+                fusedAnalysis = true;
+                return true;
+            default:
+                if (flag.startsWith("--incremental=")) {
+                    incrementalCacheDir = flag.substring("--incremental=".length());
+                    return true;
+                }
+                if (flag.startsWith("--cache=")) {
+                    compileCacheDir = flag.substring("--cache=".length());
+                    return true;
+                }
+                return false;
+        }
+    }
+}
+
+class CompilationResult {
+    public ProgramAST program;
+    public List<IR3> irs; // a CompactIR3 with --compact-ir
+    public ArrayList<ARMInstruction> instructions;
+    public String asm; // null if it was written straight to options.asmOutputFile, see Compiler.emit
+    public Exception error; // null if the compilation succeeded
+    public int reusedClasses = 0; // only counted in incremental compiles
+    public int recompiledClasses = 0;
+    public boolean fromCache = false; // only asm is set when the result came from the compile cache
+    public CompileStats stats; // null unless options.printStats
+    // irs, instructions and asm are all null after a streamed compile, the assembly is only in the output file
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+}
+
+class Compiler {
+    // bump whenever the compiler's output for the same input changes, this invalidates the compile cache
+    static final String OUTPUT_VERSION = "1";
+
+    // the command line driver, usage: Compiler [flags...] file
+    // Parser's main does the same, but loading Parser unpacks CUP's parse tables even when --fast-parser is used
+    public static void main(String[] args) throws Exception {
+        // the command line driver keeps printing all the intermediate tables and writing sample.s
+        CompilerOptions options = CompilerOptions.verbose();
+        options.asmOutputFile = "sample.s";
+        for (int i = 0; i < args.length - 1; i++) {
+            if (!options.applyFlag(args[i])) throw new IllegalArgumentException("Unknown flag " + args[i]);
+        }
+        // compile the whole program in a fresh compilation context
+        CompilationResult result = compileFile(args[args.length - 1], options);
+        if (!result.isSuccessful()) throw result.error;
+    }
+
+    public static CompilationResult compile(Reader source) {
+        return compile(source, new CompilerOptions());
+    }
+
+    public static CompilationResult compile(Reader source, CompilerOptions options) {
+        if (options.canUseCompileCache()) return compileCached(source, options);
+
+        if (options.fastLexer) {
+            String text;
+            try {
+                text = readAll(source);
+            } catch (IOException e) {
+                CompilationResult result = new CompilationResult();
+                result.error = e;
+                return result;
+            }
+            FastLexer lexer = new FastLexer(text);
+            if (options.diagnostics != null) lexer.diagnostics = options.diagnostics;
+            return compile(tokens(lexer, options), lexer, null, options);
+        }
+
+        ComplexSymbolFactory csf = new ComplexSymbolFactory();
+        Lexer lexer = new Lexer(source, csf);
+        if (options.diagnostics != null) lexer.diagnostics = options.diagnostics;
+        return compile(options.pipelinedLexer ? new PipelinedScanner(lexer) : new ScannerBuffer(lexer), null, csf, options);
+    }
+
+    // with the fast lexer the file is memory-mapped and lexed straight from its bytes
+    public static CompilationResult compileFile(String filename, CompilerOptions options) throws IOException {
+        if (options.fastLexer && !options.canUseCompileCache()) {
+            FastLexer lexer = FastLexer.map(filename);
+            if (options.diagnostics != null) lexer.diagnostics = options.diagnostics;
+            return compile(tokens(lexer, options), lexer, null, options);
+        }
+        return compile(new BufferedReader(new FileReader(filename)), options);
+    }
+
+    private static Scanner tokens(FastLexer lexer, CompilerOptions options) {
+        return options.pipelinedLexer ? new PipelinedScanner(lexer) : lexer;
+    }
+
+    // tokens come from fastLexer if it is set, otherwise they are the JFlex lexer's, made with csf
+    private static ProgramAST parse(Scanner tokens, FastLexer fastLexer, ComplexSymbolFactory csf, CompilerOptions options) throws Exception {
+        try {
+            if (options.fastParser) {
+                FastParser parser = new FastParser(tokens, fastLexer);
+                if (options.diagnostics != null) parser.diagnostics = options.diagnostics;
+                return parser.parse();
+            }
+            Parser parser = fastLexer != null ? new Parser(tokens, fastLexer) : new Parser(tokens, csf);
+            parser.diagnostics = options.diagnostics;
+            return (ProgramAST) parser.parse().value;
+        } finally {
+            if (tokens instanceof PipelinedScanner) ((PipelinedScanner) tokens).close();
+        }
+    }
+
+    private static CompilationResult compile(Scanner tokens, FastLexer fastLexer, ComplexSymbolFactory csf, CompilerOptions options) {
+        CompilationResult result = new CompilationResult();
+        CompilationContext ctx = new CompilationContext();
+        if (options.printStats) result.stats = new CompileStats();
+
+        try {
+            // lexing overlaps with parsing, so it is part of this phase
+            CompileStats.Phase phase = CompileStats.begin(result.stats, "parse");
+            result.program = parse(tokens, fastLexer, csf, options);
+            long nodes = phase.isRecording() ? CompileStats.countNodes(result.program) : 0;
+            phase.end(nodes);
+            if (result.stats != null) result.stats.astNodes = nodes;
+
+            compile(ctx, options, result);
+        } catch (Exception e) {
+            result.error = e;
+            return result;
+        }
+
+        if (options.printSymbolTables) ctx.symbolTables.print();
+        if (options.printClassTables) ctx.classTables.print();
+        if (options.printIR3) IR3.printIR3(result.irs);
+        if (options.printASM) System.out.println(result.asm);
+        if (options.printAST) ASTJSONWriter.write(Channels.newChannel(System.out), result.program);
+        if (options.asmOutputFile != null && result.asm != null) ARMInstruction.writeASMToFile(result.asm, options.asmOutputFile);
+        if (options.printStats) System.err.println(result.stats.toJSON());
+
+        return result;
+    }
+
+    private static CompilationResult compileCached(Reader source, CompilerOptions options) {
+        String text;
+        try {
+            text = readAll(source);
+        } catch (IOException e) {
+            CompilationResult result = new CompilationResult();
+            result.error = e;
+            return result;
+        }
+
+        CompileCache cache = new CompileCache(options.compileCacheDir);
+        String key = CompileCache.key(options.outputKey(), text);
+        String asm = cache.lookup(key);
+        if (asm == null) {
+            // the cache needs the assembly as a String, so the file is written here instead of by emit
+            CompilerOptions uncached = options.copy();
+            uncached.compileCacheDir = null;
+            uncached.asmOutputFile = null;
+            CompilationResult result = compile(new StringReader(text), uncached);
+            if (!result.isSuccessful()) return result;
+            cache.store(key, result.asm);
+            if (options.asmOutputFile != null) ARMInstruction.writeASMToFile(result.asm, options.asmOutputFile);
+            return result;
+        }
+
+        CompilationResult result = new CompilationResult();
+        result.asm = asm;
+        result.fromCache = true;
+        if (options.printASM) System.out.println(result.asm);
+        if (options.asmOutputFile != null) ARMInstruction.writeASMToFile(result.asm, options.asmOutputFile);
+        return result;
+    }
+
+    private static String readAll(Reader source) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[8192];
+        int n;
+        while ((n = source.read(buffer)) > 0) sb.append(buffer, 0, n);
+        return sb.toString();
+    }
+
+    // each phase's count is the number of classes, methods, AST nodes or instructions it went through
+    private static void compile(CompilationContext ctx, CompilerOptions options, CompilationResult result) throws DistinctNamesCheckingException, TypeCheckingException, IOException {
+        ProgramAST program = result.program;
+        CompileStats stats = result.stats;
+        int classCount = 1 + program.classes.size();
+
+        CompileStats.Phase phase;
+        ClassDescriptors classDescriptors;
+        if (options.fusedAnalysis) {
+            phase = CompileStats.begin(stats, "declarations");
+            classDescriptors = FusedFrontend.declare(ctx, program);
+            phase.end(classCount);
+        } else {
+            phase = CompileStats.begin(stats, "distinctNames");
+            program.distinctNamesCheck();
+            phase.end(classCount);
+
+            phase = CompileStats.begin(stats, "classDescriptors");
+            classDescriptors = program.buildClassDescriptors(ctx);
+            phase.end(classCount);
+        }
+
+        if (options.incrementalCacheDir != null) {
+            // type checks only the classes that changed
+            phase = CompileStats.begin(stats, "incremental");
+            ctx.dataTable.init(ctx);
+            IncrementalBackend.compile(ctx, classDescriptors, program, result, options.incrementalCacheDir);
+            phase.end(result.recompiledClasses);
+
+            // one cached entry per class, each standing for all of the class's instructions
+            long ir3Count = 0;
+            long armCount = 0;
+            for (IR3 ir : result.irs) ir3Count += ((CachedIR3) ir).count;
+            for (ARMInstruction instruction : result.instructions) armCount += ((CachedARMInstructions) instruction).count;
+            emit(ctx, options, result, ir3Count, armCount);
+            return;
+        }
+
+        boolean fuseTypeCheck = options.fusedAnalysis && !options.parallelTypeCheck && !options.streamOutput && !options.parallelCodegen;
+        if (!fuseTypeCheck) {
+            phase = CompileStats.begin(stats, "typeCheck");
+            LocalEnvironment localEnvironment = new LocalEnvironment();
+            if (options.parallelTypeCheck) {
+                program.typeCheckParallel(classDescriptors, localEnvironment);
+            } else {
+                program.typeCheck(classDescriptors, localEnvironment);
+            }
+            phase.end(methodCount(program));
+        }
+
+        ctx.dataTable.init(ctx);
+
+        if (options.streamOutput) {
+            if (options.asmOutputFile == null) throw new IllegalArgumentException("Streaming compiles need an output file");
+            phase = CompileStats.begin(stats, "stream");
+            StreamingBackend.compile(ctx, program, options.asmOutputFile, stats);
+            phase.end(methodCount(program));
+            return;
+        }
+
+        if (options.parallelCodegen) {
+            // IR3 generation and lowering are interleaved across methods, so they are timed together
+            phase = CompileStats.begin(stats, "codegen");
+            ParallelBackend.generate(ctx, program, result);
+            phase.end(result.instructions.size());
+        } else {
+            if (fuseTypeCheck) {
+                // type checking and IR3 generation are interleaved across methods, so they are timed together
+                phase = CompileStats.begin(stats, "analysis");
+                result.irs = FusedFrontend.analyze(ctx, program, classDescriptors, options.compactIR);
+            } else {
+                phase = CompileStats.begin(stats, "genIR");
+                result.irs = options.compactIR ? CompactIR3.generate(ctx, program) : program.genIR(ctx);
+            }
+            phase.end(result.irs.size());
+
+            phase = CompileStats.begin(stats, "lowering");
+            result.instructions = ARMInstruction.generateARMInstructions(ctx, result.irs);
+            phase.end(result.instructions.size());
+        }
+        emit(ctx, options, result, result.irs != null ? result.irs.size() : -1, result.instructions.size());
+    }
+
+    // the assembly is only built as a String if something needs it, otherwise it goes through a buffer into the file
+    private static void emit(CompilationContext ctx, CompilerOptions options, CompilationResult result, long ir3Count, long armCount) throws IOException {
+        CompileStats.Phase phase = CompileStats.begin(result.stats, "emit");
+        if (options.asmOutputFile != null && !options.printASM) {
+            ARMInstruction.writeASMToFile(ctx, result.instructions, options.asmOutputFile);
+        } else {
+            result.asm = ARMInstruction.getASMString(ctx, result.instructions);
+        }
+        phase.end(armCount);
+        if (result.stats != null) {
+            result.stats.ir3Instructions = ir3Count;
+            result.stats.armInstructions = armCount;
+            result.stats.addMethods(ctx.symbolTables);
+        }
+    }
+
+    private static int methodCount(ProgramAST program) {
+        int count = program.mainClass.methods.size();
+        for (ClassAST cls : program.classes) count += cls.methods.size();
+        return count;
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import java_cup.runtime.ComplexSymbolFactory;
+import java_cup.runtime.Scanner;
+import java_cup.runtime.ScannerBuffer;
+
+/**
+ * Runs the compiler's phases one at a time, for the JMH benchmarks in bench/.
+ *
+ * JMH can't generate code for benchmarks in the default package, and code in any other package can't name the
+ * compiler's classes, so the benchmarks look these methods up reflectively and pass the compiler's objects
+ * around as Object. Each phase takes what the phases before it produced, and returns its own result.
+ */
+class CompilerPhases {
+    // number of tokens, with the JFlex lexer
+    public static int lex(String source) throws Exception {
+        return countTokens(new Lexer(new StringReader(source), new ComplexSymbolFactory()));
+    }
+
+    public static int fastLex(String source) throws Exception {
+        return countTokens(new FastLexer(source));
+    }
+
+    private static int countTokens(Scanner lexer) throws Exception {
+        int count = 0;
+        while (lexer.next_token().sym != sym.EOF) count++;
+        return count;
+    }
+
+    // lexes as well, tokens can't be replayed into the CUP parser
+    public static Object parse(String source) throws Exception {
+        ComplexSymbolFactory csf = new ComplexSymbolFactory();
+        return new Parser(new ScannerBuffer(new Lexer(new StringReader(source), csf)), csf).parse().value;
+    }
+
+    public static Object fastParse(String source) throws Exception {
+        FastLexer lexer = new FastLexer(source);
+        return new FastParser(lexer, lexer).parse();
+    }
+
+    public static void distinctNamesCheck(Object program) throws Exception {
+        ((ProgramAST) program).distinctNamesCheck();
+    }
+
+    public static Object classDescriptors(Object program) {
+        return ((ProgramAST) program).buildClassDescriptors(new CompilationContext());
+    }
+
+    public static Object typeCheck(Object program, Object classDescriptors) throws Exception {
+        return ((ProgramAST) program).typeCheck((ClassDescriptors) classDescriptors, new LocalEnvironment());
+    }
+
+    // a context ready for genIR, the program must have been type checked
+    public static Object codegenContext(Object program) {
+        CompilationContext ctx = new CompilationContext();
+        ((ProgramAST) program).buildClassDescriptors(ctx);
+        ctx.dataTable.init(ctx);
+        return ctx;
+    }
+
+    // fills in ctx, so each call needs a fresh codegenContext
+    public static Object genIR(Object program, Object ctx) {
+        return ((ProgramAST) program).genIR((CompilationContext) ctx);
+    }
+
+    // distinctNamesCheck through genIR, each a walk of its own as in a sequential compile, returns the IR3
+    public static Object frontEnd(Object program) throws Exception {
+        ProgramAST ast = (ProgramAST) program;
+        CompilationContext ctx = new CompilationContext();
+        ast.distinctNamesCheck();
+        ClassDescriptors classDescriptors = ast.buildClassDescriptors(ctx);
+        ast.typeCheck(classDescriptors, new LocalEnvironment());
+        ctx.dataTable.init(ctx);
+        return ast.genIR(ctx);
+    }
+
+    // the same as frontEnd with --fused-analysis
+    public static Object fusedFrontEnd(Object program) throws Exception {
+        CompilationContext ctx = new CompilationContext();
+        ClassDescriptors classDescriptors = FusedFrontend.declare(ctx, (ProgramAST) program);
+        ctx.dataTable.init(ctx);
+        return FusedFrontend.analyze(ctx, (ProgramAST) program, classDescriptors, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Object generateARMInstructions(Object ctx, Object irs) {
+        return ARMInstruction.generateARMInstructions((CompilationContext) ctx, (List<IR3>) irs);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static String getASMString(Object ctx, Object instructions) {
+        return ARMInstruction.getASMString((CompilationContext) ctx, (ArrayList<ARMInstruction>) instructions);
+    }
+
+    // a ProgramGenerator program, expressions and statements both nested depth deep
+    public static String synthetic(int classes, int methods, int statements, int depth) {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.classes = classes;
+        generator.methods = methods;
+        generator.statements = statements;
+        generator.expressionDepth = depth;
+        generator.nestingDepth = depth;
+        return generator.generate();
+    }
+}
@@ -0,0 +1,456 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import java_cup.runtime.ComplexSymbolFactory.ComplexSymbol;
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import java_cup.runtime.Scanner;
+import java_cup.runtime.Symbol;
+
+/**
+ * Hand-written lexer over a byte buffer (usually a memory-mapped source file), producing the same tokens as the
+ * JFlex lexer in minijava.flex. Used with the --fast-lexer flag.
+ *
+ * Source is read as UTF-8 bytes without decoding it to chars first, and tokens are plain Symbols with no
+ * Location objects: their left/right are char offsets (like a ComplexSymbol's), while line and column are only
+ * tracked as a position packed into a long. Locations are only built when the parser reports an error, see describe.
+ * Identifiers are looked up by their bytes in a table of the names seen so far, so a String is only created
+ * (and interned) the first time a name occurs. Keywords are in the same table, so they cost the same lookup.
+ *
+ * Errors are reported exactly like the JFlex lexer does, with lines, columns and offsets counted in chars
+ * and the same line terminators.
+ */
+class FastLexer implements Scanner, sym {
+    private static final boolean[] IDENT_PART = new boolean[128];
+    static {
+        for (char c = 'a'; c <= 'z'; c++) IDENT_PART[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) IDENT_PART[c] = true;
+        for (char c = '0'; c <= '9'; c++) IDENT_PART[c] = true;
+        IDENT_PART['_'] = true;
+    }
+    private static final byte[] VOID_MAIN = "Void main".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBuffer in;
+    private final int end;
+    private int pos = 0; // next byte to read
+
+    // JFlex counts lines, columns and offsets in chars, so this is how many more bytes than chars were read so far
+    private int extra = 0;
+    private int line = 0;
+    private int lineStart = 0; // byte where the current line starts
+    private int lineStartExtra = 0; // extra at lineStart
+
+    // names seen so far, open addressing on the name's bytes; keywords are entered up front
+    private byte[][] names = new byte[256][];
+    private int[] nameTokens = new int[256];
+    private Object[] nameValues = new Object[256]; // symbol value: the interned name, or what the keyword's symbol carries
+    private int nameCount = 0;
+
+    private byte[] string = new byte[256]; // contents of the string literal being read
+    private int stringLength = 0;
+
+    public PrintStream diagnostics = System.out; // where illegal characters are reported, as the JFlex lexer does
+
+    public FastLexer(ByteBuffer in) {
+        this.in = in;
+        this.end = in.limit();
+        keyword("class", CLASS, null);
+        keyword("while", WHILE, null);
+        keyword("readln", READLN, null);
+        keyword("println", PRINTLN, null);
+        keyword("if", IF, null);
+        keyword("else", ELSE, null);
+        keyword("this", THIS, null);
+        keyword("new", NEW, null);
+        keyword("null", NULL, null);
+        keyword("return", RETURN, null);
+        keyword("true", BOOLCONST, true);
+        keyword("false", BOOLCONST, false);
+    }
+
+    public FastLexer(String source) {
+        this(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // maps the whole file read-only, it stays mapped until the lexer is garbage collected
+    public static FastLexer map(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException(filename + " is too large to lex");
+            return new FastLexer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    ///// positions /////
+
+    // line in the high half, column in the low half, both 0-based
+    private static long pack(int line, int column) {
+        return ((long) line << 32) | column;
+    }
+
+    private static int lineOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int columnOf(long position) {
+        return (int) position;
+    }
+
+    // only valid for bytes up to the one about to be read
+    private long positionOf(int at) {
+        return pack(line, at - lineStart - (extra - lineStartExtra));
+    }
+
+    private int offsetOf(int at) {
+        return at - extra;
+    }
+
+    private Symbol token(int id, int start, int length, Object value) {
+        int left = offsetOf(start);
+        return new Symbol(id, left, left + length, value);
+    }
+
+    /**
+     * Returns a ComplexSymbol with the name and locations the JFlex lexer would have given a token,
+     * so error messages read the same. Anything that isn't one of this lexer's tokens is returned as is.
+     *
+     * Only the token's offset is known, so the input is counted through again up to it. That is only done
+     * for errors, and doesn't touch this lexer's state, which may be lexing ahead on another thread.
+     */
+    public Object describe(Object info) {
+        if (!(info instanceof Symbol) || info instanceof ComplexSymbol) return info;
+        Symbol token = (Symbol) info;
+        if (token.left < 0) return info;
+
+        FastLexer counter = new FastLexer(in.duplicate());
+        while (counter.pos < end && counter.offsetOf(counter.pos) < token.left) counter.skip();
+        long position = counter.positionOf(counter.pos);
+        int line = lineOf(position) + 1;
+        int column = columnOf(position);
+        Location left = new Location(line, column + 1, token.left);
+        Location right = new Location(line, column + (token.right - token.left), token.right);
+        return new ComplexSymbol(nameOf(token), token.sym, left, right, token.value);
+    }
+
+    private static String nameOf(Symbol token) {
+        switch (token.sym) {
+            case CLASS: return "class";
+            case WHILE: return "while";
+            case READLN: return "readln";
+            case PRINTLN: return "println";
+            case IF: return "if";
+            case ELSE: return "else";
+            case THIS: return "this";
+            case NEW: return "new";
+            case NULL: return "null";
+            case MAINFUNC: return "mainfunc";
+            case RETURN: return "return";
+            case INTCONST: return "IntConst";
+            case BOOLCONST: return token.value.toString();
+            case PLUS: case MINUS: case TIMES: case DIV: return "+";
+            case LT: return "<";
+            case GT: return ">";
+            case LEQ: return "<=";
+            case GEQ: return ">=";
+            case EQ: return "==";
+            case NEQ: return "!=";
+            case OR: return "||";
+            case AND: return "&&";
+            case NOT: return "!";
+            case ASSIGN: return "=";
+            case LPAREN: return "(";
+            case RPAREN: return ")";
+            case LBLOCK: return "{";
+            case RBLOCK: return "}";
+            case ENDSTMT: return ";";
+            case COMMA: case DOT: return ",";
+            case IDNAME: return "<id>" + token.value;
+            case CLASSNAME: return "<class>" + token.value;
+            case STRING_LITERAL: return "String";
+            case EOF: return "EOF";
+            default: return "?";
+        }
+    }
+
+    ///// reading chars /////
+
+    private int peek(int at) {
+        return at < end ? in.get(at) & 0xff : -1;
+    }
+
+    // reads one char outside of a token, keeping track of lines and of multi-byte characters
+    private void skip() {
+        int b = in.get(pos) & 0xff;
+        if (b < 0x80) {
+            pos++;
+            if (b == '\n') {
+                // \r\n is a single line terminator
+                if (pos < 2 || in.get(pos - 2) != '\r') line++;
+                newLine();
+            } else if (b == '\r' || b == 0x0B || b == 0x0C) {
+                line++;
+                newLine();
+            }
+            return;
+        }
+
+        int length = utf8Length(b);
+        boolean terminator = (length == 2 && b == 0xC2 && peek(pos + 1) == 0x85) // NEL
+                || (length == 3 && b == 0xE2 && peek(pos + 1) == 0x80 && (peek(pos + 2) == 0xA8 || peek(pos + 2) == 0xA9)); // LS, PS
+        extra += length - (length == 4 ? 2 : 1); // 4 byte characters are surrogate pairs
+        pos += length;
+        if (terminator) {
+            line++;
+            newLine();
+        }
+    }
+
+    private void newLine() {
+        lineStart = pos;
+        lineStartExtra = extra;
+    }
+
+    private int utf8Length(int b) {
+        int length = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+        return Math.min(length, end - pos);
+    }
+
+    private void illegalCharacter() {
+        long position = positionOf(pos);
+        String text = new String(bytesAt(pos, utf8Length(in.get(pos) & 0xff)), StandardCharsets.UTF_8);
+        diagnostics.println("Error at line " + (lineOf(position) + 1) + ", column " + (columnOf(position) + 1) + " : Illegal character <" + text + ">");
+        skip();
+    }
+
+    private byte[] bytesAt(int start, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) bytes[i] = in.get(start + i);
+        return bytes;
+    }
+
+    ///// tokens /////
+
+    @Override
+    public Symbol next_token() {
+        while (pos < end) {
+            int start = pos;
+            int b = in.get(pos) & 0xff;
+            int next = peek(pos + 1);
+            switch (b) {
+                case ' ': case '\t': case '\f': case '\r': case '\n':
+                    skip();
+                    continue;
+                case '"':
+                    pos++;
+                    if (readString()) return token(STRING_LITERAL, pos - 1, 1, new String(string, 0, stringLength, StandardCharsets.UTF_8));
+                    continue;
+                case '/':
+                    if (next == '*') {
+                        pos += 2;
+                        skipBlockComment();
+                        continue;
+                    }
+                    if (next == '/') {
+                        pos += 2;
+                        skipLineComment();
+                        continue;
+                    }
+                    return operator(DIV, 1);
+                case '+': return operator(PLUS, 1);
+                case '-': return operator(MINUS, 1);
+                case '*': return operator(TIMES, 1);
+                case '<': return next == '=' ? operator(LEQ, 2) : operator(LT, 1);
+                case '>': return next == '=' ? operator(GEQ, 2) : operator(GT, 1);
+                case '=': return next == '=' ? operator(EQ, 2) : operator(ASSIGN, 1);
+                case '!': return next == '=' ? operator(NEQ, 2) : operator(NOT, 1);
+                case '|':
+                    if (next == '|') return operator(OR, 2);
+                    break;
+                case '&':
+                    if (next == '&') return operator(AND, 2);
+                    break;
+                case '(': return operator(LPAREN, 1);
+                case ')': return operator(RPAREN, 1);
+                case '{': return operator(LBLOCK, 1);
+                case '}': return operator(RBLOCK, 1);
+                case ';': return operator(ENDSTMT, 1);
+                case ',': return operator(COMMA, 1);
+                case '.': return operator(DOT, 1);
+                default:
+                    if (b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z') {
+                        if (b == 'V' && matches(VOID_MAIN)) return operator(MAINFUNC, VOID_MAIN.length);
+                        return word(start);
+                    }
+                    if (b >= '0' && b <= '9') return intConst(start);
+                    break;
+            }
+            illegalCharacter();
+        }
+        return token(EOF, pos, 1, null);
+    }
+
+    private Symbol operator(int id, int length) {
+        pos += length;
+        return token(id, pos - length, length, null);
+    }
+
+    private boolean matches(byte[] text) {
+        if (end - pos < text.length) return false;
+        for (int i = 0; i < text.length; i++) {
+            if (in.get(pos + i) != text[i]) return false;
+        }
+        return true;
+    }
+
+    private Symbol word(int start) {
+        int hash = 0;
+        int b;
+        while (pos < end && (b = in.get(pos)) >= 0 && IDENT_PART[b]) {
+            hash = 31 * hash + b;
+            pos++;
+        }
+        int slot = lookup(start, pos - start, hash);
+        return token(nameTokens[slot], start, pos - start, nameValues[slot]);
+    }
+
+    // 0 | [1-9][0-9]*
+    private Symbol intConst(int start) {
+        long value = in.get(pos++) - '0';
+        if (value != 0) {
+            int b;
+            while (pos < end && (b = in.get(pos)) >= '0' && b <= '9') {
+                if (value <= Integer.MAX_VALUE) value = value * 10 + (b - '0');
+                pos++;
+            }
+        }
+        if (value > Integer.MAX_VALUE) {
+            // fails with the same exception as the JFlex lexer
+            Integer.parseInt(new String(bytesAt(start, pos - start), StandardCharsets.US_ASCII));
+        }
+        return token(INTCONST, start, pos - start, Integer.valueOf((int) value));
+    }
+
+    // reads up to and including the closing quote, returns false at the end of input
+    private boolean readString() {
+        stringLength = 0;
+        while (pos < end) {
+            int b = in.get(pos);
+            switch (b) {
+                case '"':
+                    pos++;
+                    return true; // the token is the closing quote, as with the JFlex lexer
+                case '\n': case '\r':
+                    illegalCharacter();
+                    continue;
+                case '\\':
+                    int next = peek(pos + 1);
+                    char escaped = next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next == '"' ? '"' : 0;
+                    if (escaped != 0) {
+                        appendString((byte) escaped);
+                        pos += 2;
+                    } else {
+                        appendString((byte) '\\');
+                        pos++;
+                    }
+                    continue;
+                default:
+                    int length = b >= 0 ? 1 : utf8Length(b & 0xff);
+                    for (int i = 0; i < length; i++) appendString(in.get(pos + i));
+                    skip();
+            }
+        }
+        return false;
+    }
+
+    private void appendString(byte b) {
+        if (stringLength == string.length) string = Arrays.copyOf(string, string.length * 2);
+        string[stringLength++] = b;
+    }
+
+    private void skipBlockComment() {
+        while (pos < end) {
+            if (in.get(pos) == '*' && peek(pos + 1) == '/') {
+                pos += 2;
+                return;
+            }
+            skip();
+        }
+    }
+
+    private void skipLineComment() {
+        while (pos < end) {
+            boolean newline = in.get(pos) == '\n';
+            skip();
+            if (newline) return;
+        }
+    }
+
+    ///// name table /////
+
+    private void keyword(String word, int id, Object value) {
+        byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+        int hash = 0;
+        for (byte b : bytes) hash = 31 * hash + b;
+        int slot = slot(bytes, 0, bytes.length, hash);
+        names[slot] = bytes;
+        nameTokens[slot] = id;
+        nameValues[slot] = value;
+        nameCount++;
+    }
+
+    private int lookup(int start, int length, int hash) {
+        int slot = slot(null, start, length, hash);
+        if (names[slot] != null) return slot;
+
+        byte[] bytes = bytesAt(start, length);
+        names[slot] = bytes;
+        nameTokens[slot] = bytes[0] >= 'a' ? IDNAME : CLASSNAME;
+        nameValues[slot] = Symbols.intern(new String(bytes, StandardCharsets.US_ASCII));
+        if (++nameCount * 2 > names.length) {
+            grow();
+            return slot(bytes, 0, length, hash);
+        }
+        return slot;
+    }
+
+    // finds the name's slot, or the empty slot it belongs in; the name is either in bytes or (if null) in the input
+    private int slot(byte[] bytes, int start, int length, int hash) {
+        int mask = names.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            byte[] name = names[slot];
+            if (name == null) return slot;
+            if (name.length != length) continue;
+            int i = 0;
+            while (i < length && name[i] == (bytes != null ? bytes[start + i] : in.get(start + i))) i++;
+            if (i == length) return slot;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void grow() {
+        byte[][] oldNames = names;
+        int[] oldTokens = nameTokens;
+        Object[] oldValues = nameValues;
+        names = new byte[oldNames.length * 2][];
+        nameTokens = new int[names.length];
+        nameValues = new Object[names.length];
+        for (int i = 0; i < oldNames.length; i++) {
+            byte[] name = oldNames[i];
+            if (name == null) continue;
+            int hash = 0;
+            for (byte b : name) hash = 31 * hash + b;
+            int slot = slot(name, 0, name.length, hash);
+            names[slot] = name;
+            nameTokens[slot] = oldTokens[i];
+            nameValues[slot] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,434 @@
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import java_cup.runtime.ComplexSymbolFactory.ComplexSymbol;
+import java_cup.runtime.Scanner;
+import java_cup.runtime.Symbol;
+
+/**
+ * Hand-written recursive descent parser for the grammar in minijava.cup, building the same ProgramAST as the
+ * CUP Parser from the same tokens. Used with the --fast-parser flag.
+ *
+ * There are no parse tables to decode when the class is loaded and no Symbols for nonterminals: each rule is a
+ * method returning its AST. Lists are read in loops, like the grammar's left-recursive rules. Expressions are
+ * parsed by precedence climbing with the precedences declared in minijava.cup, so they group exactly as they do
+ * there, including && binding looser than || and ! looser than comparisons and arithmetic.
+ *
+ * A syntax error stops the parse like an unrecovered error in the CUP parser: the token is reported the same way
+ * and the same exception is thrown. Only the list of expected tokens can differ.
+ *
+ * Run on its own (make parsecheck), it parses every program in a directory with both parsers, checks the ASTs are
+ * the same and times them.
+ */
+class FastParser implements sym {
+    // precedences from minijava.cup, higher binds tighter; all binary operators are left associative
+    private static final int AND_PRECEDENCE = 1;
+    private static final int OR_PRECEDENCE = 2;
+    private static final int NOT_PRECEDENCE = 3;
+    private static final int COMPARISON_PRECEDENCE = 4;
+    private static final int ADDITIVE_PRECEDENCE = 5;
+    private static final int MULTIPLICATIVE_PRECEDENCE = 6;
+    private static final int UMINUS_PRECEDENCE = 7;
+
+    private static final int[] PRECEDENCE = new int[terminalNames.length]; // 0 if the token isn't a binary operator
+    private static final String[] OPERATOR = new String[terminalNames.length];
+    static {
+        binary(AND, AND_PRECEDENCE, "&&");
+        binary(OR, OR_PRECEDENCE, "||");
+        binary(LT, COMPARISON_PRECEDENCE, "<");
+        binary(GT, COMPARISON_PRECEDENCE, ">");
+        binary(LEQ, COMPARISON_PRECEDENCE, "<=");
+        binary(GEQ, COMPARISON_PRECEDENCE, ">=");
+        binary(EQ, COMPARISON_PRECEDENCE, "==");
+        binary(NEQ, COMPARISON_PRECEDENCE, "!=");
+        binary(PLUS, ADDITIVE_PRECEDENCE, "+");
+        binary(MINUS, ADDITIVE_PRECEDENCE, "-");
+        binary(TIMES, MULTIPLICATIVE_PRECEDENCE, "*");
+        binary(DIV, MULTIPLICATIVE_PRECEDENCE, "/");
+    }
+
+    private static void binary(int token, int precedence, String operator) {
+        PRECEDENCE[token] = precedence;
+        OPERATOR[token] = operator;
+    }
+
+    private final Scanner scanner;
+    private final FastLexer fastLexer; // its tokens carry no locations, it rebuilds them when an error is reported
+    private Symbol token; // the current token
+    private Symbol peeked = null; // the token after it, once looked at
+    private int lastSelector = -1; // DOT or LPAREN if the last atom parsed ended in a member access or a call
+
+    public PrintStream diagnostics = System.err; // where syntax errors are reported
+
+    // fastLexer is null for JFlex tokens, otherwise it's where scanner gets its tokens (or scanner itself)
+    public FastParser(Scanner scanner, FastLexer fastLexer) {
+        this.scanner = scanner;
+        this.fastLexer = fastLexer;
+    }
+
+    public ProgramAST parse() throws Exception {
+        advance();
+        ClassAST mainClass = mainClass();
+        ArrayList<ClassAST> classes = new ArrayList<>();
+        while (token.sym == CLASS) classes.add(classDecl());
+        expect(EOF);
+        return new ProgramAST(mainClass, classes);
+    }
+
+    private ClassAST mainClass() throws Exception {
+        expect(CLASS);
+        String name = name(CLASSNAME);
+        expect(LBLOCK);
+        expect(MAINFUNC);
+        ArrayList<VarDeclAST> params = params();
+        BlockAST body = block();
+        expect(RBLOCK);
+        ArrayList<FuncDeclAST> methods = new ArrayList<>();
+        methods.add(new FuncDeclAST("Void", "main", params, body));
+        return new ClassAST(name, new ArrayList<VarDeclAST>(), methods);
+    }
+
+    private ClassAST classDecl() throws Exception {
+        expect(CLASS);
+        String name = name(CLASSNAME);
+        expect(LBLOCK);
+        ArrayList<VarDeclAST> fields = new ArrayList<>();
+        ArrayList<FuncDeclAST> methods = new ArrayList<>();
+        // a field and a method are only told apart by the token after the name, and fields come first
+        while (token.sym == CLASSNAME) {
+            String type = name(CLASSNAME);
+            String member = name(IDNAME);
+            if (methods.isEmpty() && accept(ENDSTMT)) {
+                fields.add(new VarDeclAST(type, member));
+            } else {
+                ArrayList<VarDeclAST> params = params();
+                methods.add(new FuncDeclAST(type, member, params, block()));
+            }
+        }
+        expect(RBLOCK);
+        return new ClassAST(name, fields, methods);
+    }
+
+    private ArrayList<VarDeclAST> params() throws Exception {
+        expect(LPAREN);
+        ArrayList<VarDeclAST> params = new ArrayList<>();
+        if (token.sym != RPAREN) {
+            do {
+                String type = name(CLASSNAME);
+                params.add(new VarDeclAST(type, name(IDNAME)));
+            } while (accept(COMMA));
+        }
+        expect(RPAREN);
+        return params;
+    }
+
+    private BlockAST block() throws Exception {
+        expect(LBLOCK);
+        ArrayList<VarDeclAST> vars = new ArrayList<>();
+        while (token.sym == CLASSNAME) {
+            String type = name(CLASSNAME);
+            vars.add(new VarDeclAST(type, name(IDNAME)));
+            expect(ENDSTMT);
+        }
+        ArrayList<AST> stmts = stmts();
+        expect(RBLOCK);
+        return new BlockAST(vars, stmts);
+    }
+
+    // one or more statements, up to the closing brace
+    private ArrayList<AST> stmts() throws Exception {
+        ArrayList<AST> stmts = new ArrayList<>();
+        do {
+            stmts.add(stmt());
+        } while (token.sym != RBLOCK);
+        return stmts;
+    }
+
+    private AST stmt() throws Exception {
+        // only the second token tells an assignment to a variable from a statement that starts with an atom
+        if (token.sym == IDNAME && peek().sym == ASSIGN) {
+            String id = name(IDNAME);
+            advance();
+            AST value = exp();
+            expect(ENDSTMT);
+            return new AssignStmtAST(new RefAST(id), value);
+        }
+        switch (token.sym) {
+            case RETURN: {
+                advance();
+                if (accept(ENDSTMT)) return new ReturnStmtAST();
+                AST value = exp();
+                expect(ENDSTMT);
+                return new ReturnStmtAST(value);
+            }
+            case IF: {
+                advance();
+                AST condition = parenthesised();
+                expect(LBLOCK);
+                ArrayList<AST> success = stmts();
+                expect(RBLOCK);
+                expect(ELSE);
+                expect(LBLOCK);
+                ArrayList<AST> failure = stmts();
+                expect(RBLOCK);
+                return new IfStmtAST(condition, success, failure);
+            }
+            case WHILE: {
+                advance();
+                AST condition = parenthesised();
+                expect(LBLOCK);
+                ArrayList<AST> body = token.sym == RBLOCK ? new ArrayList<AST>() : stmts();
+                expect(RBLOCK);
+                return new WhileStmtAST(condition, body);
+            }
+            case READLN: {
+                advance();
+                expect(LPAREN);
+                String id = name(IDNAME);
+                expect(RPAREN);
+                expect(ENDSTMT);
+                return new ReadlnAST(new RefAST(id));
+            }
+            case PRINTLN: {
+                advance();
+                AST output = parenthesised();
+                expect(ENDSTMT);
+                return new PrintlnAST(output);
+            }
+            default: {
+                // only an atom ending in a member access can be assigned to, and only one ending in a call is a statement
+                AST atom = atom();
+                if (lastSelector == DOT && accept(ASSIGN)) {
+                    AST value = exp();
+                    expect(ENDSTMT);
+                    return new AssignStmtAST(atom, value);
+                }
+                if (lastSelector == LPAREN && accept(ENDSTMT)) return atom;
+                throw syntaxError(lastSelector == DOT ? ASSIGN : lastSelector == LPAREN ? ENDSTMT : DOT, LPAREN);
+            }
+        }
+    }
+
+    // an expression in parentheses, as after if, while and println
+    private AST parenthesised() throws Exception {
+        expect(LPAREN);
+        AST e = exp();
+        expect(RPAREN);
+        return e;
+    }
+
+    private AST exp() throws Exception {
+        return exp(0);
+    }
+
+    // parses an expression whose binary operators all bind tighter than minPrecedence
+    private AST exp(int minPrecedence) throws Exception {
+        AST left = operand();
+        while (PRECEDENCE[token.sym] > minPrecedence) {
+            int operator = token.sym;
+            advance();
+            // operands of equal precedence on the right are left for this loop, so operators associate to the left
+            left = new BinOpAST(OPERATOR[operator], left, exp(PRECEDENCE[operator]));
+        }
+        return left;
+    }
+
+    private AST operand() throws Exception {
+        Symbol t = token;
+        switch (t.sym) {
+            case MINUS:
+                advance();
+                return new UnOpAST("-", exp(UMINUS_PRECEDENCE));
+            case NOT:
+                advance();
+                return new UnOpAST("!", exp(NOT_PRECEDENCE));
+            case STRING_LITERAL:
+                advance();
+                return new StringAST((String) t.value);
+            case INTCONST:
+                advance();
+                return new IntAST((Integer) t.value);
+            case BOOLCONST:
+                advance();
+                return new BoolAST((Boolean) t.value);
+            case NULL: case THIS: case NEW: case LPAREN: case IDNAME:
+                return atom();
+            default:
+                throw syntaxError(NULL, THIS, NEW, LPAREN, IDNAME, INTCONST, BOOLCONST, STRING_LITERAL, MINUS, NOT);
+        }
+    }
+
+    // sets lastSelector to how the atom ended
+    private AST atom() throws Exception {
+        AST atom;
+        switch (token.sym) {
+            case NULL:
+                advance();
+                atom = new NullPtrAST();
+                break;
+            case THIS:
+                advance();
+                atom = new ThisPtrAST();
+                break;
+            case NEW: {
+                advance();
+                String className = name(CLASSNAME);
+                expect(LPAREN);
+                expect(RPAREN);
+                atom = new ConstructionAST(className);
+                break;
+            }
+            case LPAREN:
+                atom = parenthesised();
+                break;
+            case IDNAME:
+                atom = new RefAST(name(IDNAME));
+                break;
+            default:
+                throw syntaxError(NULL, THIS, NEW, LPAREN, IDNAME);
+        }
+
+        lastSelector = -1;
+        while (true) {
+            if (accept(DOT)) {
+                atom = new MemberAccessAST(atom, name(IDNAME));
+                lastSelector = DOT;
+            } else if (accept(LPAREN)) {
+                ArrayList<AST> args = new ArrayList<>();
+                if (token.sym != RPAREN) {
+                    do {
+                        args.add(exp());
+                    } while (accept(COMMA));
+                }
+                expect(RPAREN);
+                atom = new FuncCallAST(atom, args);
+                lastSelector = LPAREN;
+            } else {
+                return atom;
+            }
+        }
+    }
+
+    private void advance() throws Exception {
+        if (peeked != null) {
+            token = peeked;
+            peeked = null;
+        } else {
+            token = scanner.next_token();
+        }
+    }
+
+    private Symbol peek() throws Exception {
+        if (peeked == null) peeked = scanner.next_token();
+        return peeked;
+    }
+
+    private boolean accept(int id) throws Exception {
+        if (token.sym != id) return false;
+        advance();
+        return true;
+    }
+
+    private void expect(int id) throws Exception {
+        if (token.sym != id) throw syntaxError(id);
+        if (id != EOF) advance();
+    }
+
+    // returns the value of a CLASSNAME or IDNAME token, the interned name
+    private String name(int id) throws Exception {
+        if (token.sym != id) throw syntaxError(id);
+        String name = (String) token.value;
+        advance();
+        return name;
+    }
+
+    // reports the current token as the CUP parser does when it can't recover, and returns the exception it throws
+    private Exception syntaxError(int... expected) {
+        report("Syntax error", token);
+        String[] names = new String[expected.length];
+        for (int i = 0; i < expected.length; i++) names[i] = terminalNames[expected[i]];
+        diagnostics.println("instead expected token classes are " + Arrays.toString(names));
+        report("Couldn't repair and continue parse", token);
+        return new Exception("Can't recover from previous error(s)");
+    }
+
+    private void report(String message, Symbol info) {
+        report(diagnostics, message, fastLexer != null ? fastLexer.describe(info) : info);
+    }
+
+    // the same as lr_parser.report_error, but to out, the CUP parser uses it too
+    static void report(PrintStream out, String message, Object info) {
+        if (info instanceof ComplexSymbol) {
+            ComplexSymbol symbol = (ComplexSymbol) info;
+            out.println(message + " for input symbol \"" + symbol.getName() + "\" spanning from " + symbol.getLeft() + " to " + symbol.getRight());
+        } else if (info instanceof Symbol && ((Symbol) info).left != -1) {
+            out.println(message + " at character " + ((Symbol) info).left + " of input");
+        } else {
+            out.println(message);
+        }
+    }
+
+    /**
+     * Usage: FastParser dir [iterations]
+     * Parses every file in dir with the CUP parser and with this one, both reading FastLexer tokens, and checks
+     * that the ASTs print the same. Then reports how long each parser took for its first pass over the files
+     * (which includes loading its classes and tables) and on average once warmed up.
+     */
+    public static void main(String[] args) throws Exception {
+        File[] files = new File(args[0]).listFiles(File::isFile);
+        Arrays.sort(files);
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        long start = System.nanoTime();
+        String[] cup = new String[files.length];
+        for (int i = 0; i < files.length; i++) cup[i] = parseWithCup(files[i]);
+        long cupFirst = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        String[] fast = new String[files.length];
+        for (int i = 0; i < files.length; i++) fast[i] = parseFast(files[i]);
+        long fastFirst = System.nanoTime() - start;
+
+        int mismatches = 0;
+        for (int i = 0; i < files.length; i++) {
+            if (cup[i].equals(fast[i])) continue;
+            System.out.println("MISMATCH " + files[i]);
+            mismatches++;
+        }
+        System.out.println(files.length + " files, " + mismatches + " mismatches");
+
+        long cupTotal = 0;
+        long fastTotal = 0;
+        for (int n = 0; n < iterations; n++) {
+            start = System.nanoTime();
+            for (File file : files) parseWithCup(file);
+            cupTotal += System.nanoTime() - start;
+            start = System.nanoTime();
+            for (File file : files) parseFast(file);
+            fastTotal += System.nanoTime() - start;
+        }
+        System.out.printf("first pass: cup %.2f ms, fast %.2f ms%n", cupFirst / 1e6, fastFirst / 1e6);
+        System.out.printf("warm pass:  cup %.3f ms, fast %.3f ms%n", cupTotal / 1e6 / iterations, fastTotal / 1e6 / iterations);
+        if (mismatches > 0) System.exit(1);
+    }
+
+    // the AST printed, or the error's message if the file doesn't parse
+    private static String parseWithCup(File file) {
+        try {
+            return ((ProgramAST) new Parser(FastLexer.map(file.getPath())).parse().value).toString();
+        } catch (Exception e) {
+            return "error: " + e.getMessage();
+        }
+    }
+
+    private static String parseFast(File file) {
+        try {
+            FastLexer lexer = FastLexer.map(file.getPath());
+            return new FastParser(lexer, lexer).parse().toString();
+        } catch (Exception e) {
+            return "error: " + e.getMessage();
+        }
+    }
+}
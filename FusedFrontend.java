@@ -0,0 +1,66 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Semantic analysis and IR3 generation in as few walks over the tree as JLite allows, see --fused-analysis.
+ *
+ * Any method can use any class in the program, so all the declarations are read first, in one pass over the classes
+ * that checks their names and builds each class's descriptor. Every method is then type checked and its IR3
+ * generated right away, while its body is still in cache, instead of type checking the whole program before
+ * generating any of it. Errors are the same as with the separate phases, every type error is reported before
+ * any codegen failure.
+ */
+class FusedFrontend {
+    // the distinct names check and buildClassDescriptors together, also fills in ctx's class tables
+    public static ClassDescriptors declare(CompilationContext ctx, ProgramAST program) throws DistinctNamesCheckingException {
+        ArrayList<ClassAST> classes = new ArrayList<>();
+        classes.add(program.mainClass);
+        classes.addAll(program.classes);
+
+        program.distinctClassNamesCheck();
+        ClassDescriptors classDescriptors = new ClassDescriptors();
+        for (ClassAST cls : classes) {
+            cls.distinctNamesCheck();
+            classDescriptors.add(cls.name, cls.buildClassDescriptor());
+        }
+
+        ctx.classTables.generateFromClassDescriptors(classDescriptors);
+        return classDescriptors;
+    }
+
+    // typeCheck and genIR method by method, into a CompactIR3 if compact, ctx's data table must be initialised
+    public static List<IR3> analyze(CompilationContext ctx, ProgramAST program, ClassDescriptors cdesc, boolean compact) throws TypeCheckingException {
+        ArrayList<ClassAST> classes = new ArrayList<>();
+        classes.add(program.mainClass);
+        classes.addAll(program.classes);
+
+        ArrayList<IR3> irs = new ArrayList<>();
+        CompactIR3 compactIRs = compact ? new CompactIR3() : null;
+        LocalEnvironment lenv = new LocalEnvironment();
+        RuntimeException codegenError = null;
+        for (ClassAST cls : classes) {
+            LocalEnvironment classEnvironment = cls.classEnvironment(lenv);
+            for (FuncDeclAST method : cls.methods) {
+                method.typeCheck(cdesc, classEnvironment);
+                if (codegenError != null) continue; // ctx is left half way through a method, only type check the rest
+
+                method.classname = cls.name;
+                try {
+                    method.genIR(ctx, irs);
+                } catch (RuntimeException e) {
+                    codegenError = e;
+                    continue;
+                }
+                if (compact) {
+                    compactIRs.addAll(irs);
+                    irs.clear();
+                }
+            }
+        }
+        if (codegenError != null) throw codegenError;
+
+        if (!compact) return irs;
+        compactIRs.trimToSize();
+        return compactIRs;
+    }
+}
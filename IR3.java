@@ -2,38 +2,50 @@ import java.util.Map;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.AbstractMap;
+import java.util.List;
 
 abstract class IR3 {
-    public static Integer labelCount = 0;
-    public static Integer variableCount = 0;
-
-    public static Integer mkLabel() {
-        return IR3.labelCount++;
-    }
-    public static String mkVar(Type type) {
-        String varName = "_tmp" + IR3.variableCount++;
-        SymbolTables.currentTable.setLocal(varName, type);
-        return varName;
-    }
-
-    public static String extractLvalue(ArrayList<IR3> irs) {
-        if (irs.isEmpty()) {
+    // the lvalue of the last instruction appended to irs from start on, see AST.genIR
+    public static String extractLvalue(ArrayList<IR3> irs, int start) {
+        if (irs.size() == start) {
             return "NO_L_VALUE";
         }
         return irs.get(irs.size() - 1).lvalue;
     }
 
-    public static void printIR3(ArrayList<IR3> irs) {
+    public static void printIR3(List<IR3> irs) {
         System.out.println("===== IR3 BEGIN =====\n");
         for (IR3 ir : irs) System.out.println(ir.toString());
         System.out.println("===== IR3 END =====\n");
     }
 
+    public static String getIR3String(List<IR3> irs) {
+        StringBuilder sb = new StringBuilder();
+        for (IR3 ir : irs) sb.append(ir.toString());
+        return sb.toString();
+    }
+
     public String lvalue;
+    public SymbolTableEntry lvalueEntry;
 
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    // operands are resolved to their symbol table entries once, as the instruction is built in its method's
+    // current table, so lowering never looks a variable up by name (offsets and registers are filled in on flush)
+    protected static SymbolTableEntry entry(CompilationContext ctx, String name) {
+        return ctx.symbolTables.currentTable.getEntry(name);
+    }
+
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         return new ArrayList<>();
     }
+
+    // shifts every label this instruction refers to, for moving method-local labels into the global numbering
+    public void relabel(int offset) {
+    }
+
+    // same text as toString, with label references kept apart so the text can be relabelled later
+    public void appendTo(RelocatableText out) {
+        out.append(toString());
+    }
 }
 
 class PlaceholderIR3 extends IR3 {
@@ -46,8 +58,10 @@ class PlaceholderIR3 extends IR3 {
 class LabelIR3 extends IR3 {
     public Integer label;
 
-    public LabelIR3() {
-        this.label = IR3.mkLabel();
+    LabelIR3() {} // filled in by CompactIR3.get
+
+    public LabelIR3(CompilationContext ctx) {
+        this.label = ctx.mkLabel();
     }
 
     @Override
@@ -56,7 +70,19 @@ class LabelIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public void relabel(int offset) {
+        label += offset;
+    }
+
+    @Override
+    public void appendTo(RelocatableText out) {
+        out.append("L");
+        out.appendLabel(label);
+        out.append(":\n");
+    }
+
+    @Override
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
         instructions.add(new ARMLabel(label));
         return instructions;
@@ -66,13 +92,15 @@ class LabelIR3 extends IR3 {
 class GotoIR3 extends IR3 {
     Integer label;
     String condition;
+    SymbolTableEntry conditionEntry;
 
-    public GotoIR3(Integer label, String condition) {
+    public GotoIR3(CompilationContext ctx, Integer label, String condition) {
         this.condition = condition;
+        this.conditionEntry = entry(ctx, condition);
         this.label = label;
     }
     public GotoIR3(Integer label) {
-        this(label, null);
+        this.label = label;
     }
 
     @Override
@@ -84,7 +112,20 @@ class GotoIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public void relabel(int offset) {
+        label += offset;
+    }
+
+    @Override
+    public void appendTo(RelocatableText out) {
+        if (condition != null) out.append("If(" + condition + ") ");
+        out.append("Goto .L");
+        out.appendLabel(label);
+        out.append(";\n");
+    }
+
+    @Override
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
         if (condition == null) {
@@ -92,13 +133,11 @@ class GotoIR3 extends IR3 {
             return instructions;
         }
 
-        SymbolTableEntry conditionTableEntry = SymbolTables.currentTable.getEntry(condition);
-
         // place the boolean to check in v1
-        if (conditionTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMMov("v1", conditionTableEntry.register));
+        if (conditionEntry.isRegisterAllocated()) {
+            instructions.add(new ARMMov("v1", conditionEntry.register));
         } else {
-            instructions.add(new ARMSimpleMemoryLoad("v1", "sp", conditionTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryLoad("v1", "sp", conditionEntry.offset));
         }
 
         // cmp v1, #1
@@ -113,15 +152,17 @@ class GotoIR3 extends IR3 {
 class FunctionStartIR3 extends IR3 {
     public String returntype;
     public String name;
+    public SymbolTable table; // the function's, made current while it is lowered
     public ArrayList<Map.Entry<String, Type>> params = new ArrayList<>();
 
-    public FunctionStartIR3(String returntype, String name) {
+    public FunctionStartIR3(String returntype, String name, SymbolTable table) {
         this.returntype = returntype;
         this.name = name;
+        this.table = table;
     }
 
-    public void addParam(String name, String type) {
-        params.add(new AbstractMap.SimpleEntry(name, Type.fromTypeString(type)));
+    public void addParam(String name, Type type) {
+        params.add(new AbstractMap.SimpleEntry<>(name, type));
     }
 
     @Override
@@ -140,13 +181,13 @@ class FunctionStartIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
         instructions.add(new ARMRawLabel(name));
         instructions.add(new ARMSTMFD("lr"));
 
-        Integer sizeOfStackFrameNeeded = SymbolTables.currentTable.size;
+        Integer sizeOfStackFrameNeeded = ctx.symbolTables.currentTable.size;
         instructions.add(new ARMLoadLiteral("v5", sizeOfStackFrameNeeded));
         instructions.add(new ARMArithmetic("-", "sp", "sp", "v5"));
 
@@ -161,10 +202,10 @@ class FunctionEndIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        Integer sizeOfStackFrameNeeded = SymbolTables.currentTable.size;
+        Integer sizeOfStackFrameNeeded = ctx.symbolTables.currentTable.size;
         instructions.add(new ARMLoadLiteral("v5", sizeOfStackFrameNeeded));
         instructions.add(new ARMArithmetic("+", "sp", "sp", "v5"));
 
@@ -179,12 +220,17 @@ class FunctionCallIR3 extends IR3 {
     public String name;
     public Type returntype;
     public ArrayList<String> args;
+    public ArrayList<SymbolTableEntry> argEntries = new ArrayList<>();
+
+    FunctionCallIR3() {} // filled in by CompactIR3.get
 
-    public FunctionCallIR3(String name, Type returntype, ArrayList<String> args) {
-        this.lvalue = IR3.mkVar(returntype);
+    public FunctionCallIR3(CompilationContext ctx, String name, Type returntype, ArrayList<String> args) {
+        this.lvalue = ctx.mkVar(returntype);
+        this.lvalueEntry = entry(ctx, lvalue);
         this.name = name;
         this.returntype = returntype;
         this.args = args;
+        for (String arg : args) argEntries.add(entry(ctx, arg));
     }
 
     @Override
@@ -198,7 +244,7 @@ class FunctionCallIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
         // move a1-a4 into v1-v4 (cannot push them just yet... will mess up stack offsets for the argument load)
@@ -209,11 +255,10 @@ class FunctionCallIR3 extends IR3 {
 
         // load arguments
         int paramRegNum = 1;
-        for (String arg : args) {
+        for (SymbolTableEntry argEntry : argEntries) {
             if (paramRegNum > 4) break; // TODO: support more then 4 arguments!
 
             String paramReg = "a" + paramRegNum;
-            SymbolTableEntry argEntry = SymbolTables.currentTable.getEntry(arg);
 
             if (argEntry.isRegisterAllocated()) {
                 instructions.add(new ARMMov(paramReg, argEntry.register));
@@ -243,12 +288,10 @@ class FunctionCallIR3 extends IR3 {
         instructions.add(new ARMLDMFD("a1"));
 
         // save return value (that is now in v5)
-        SymbolTableEntry lvalueTableEntry = SymbolTables.currentTable.getEntry(lvalue);
-
-        if (lvalueTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMMov(lvalueTableEntry.register, "v5"));
+        if (lvalueEntry.isRegisterAllocated()) {
+            instructions.add(new ARMMov(lvalueEntry.register, "v5"));
         } else {
-            instructions.add(new ARMSimpleMemoryStore("v5", "sp", lvalueTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryStore("v5", "sp", lvalueEntry.offset));
         }
 
         return instructions;
@@ -257,10 +300,14 @@ class FunctionCallIR3 extends IR3 {
 
 class PrintIR3 extends IR3 {
     String output;
+    SymbolTableEntry outputEntry;
     Boolean isInt;
 
-    PrintIR3(String output, Boolean isInt) {
+    PrintIR3() {} // filled in by CompactIR3.get
+
+    PrintIR3(CompilationContext ctx, String output, Boolean isInt) {
         this.output = output;
+        this.outputEntry = entry(ctx, output);
         this.isInt = isInt;
     }
 
@@ -270,28 +317,28 @@ class PrintIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        SymbolTableEntry outputTableEntry = SymbolTables.currentTable.getEntry(output);
-
         // instructions.add(new ARMPush("a2")); // save a2
         // instructions.add(new ARMPush("a1")); // save a1
         instructions.add(new ARMMov("v1", "a1"));
         instructions.add(new ARMMov("v2", "a2"));
 
         if (isInt) {
-            instructions.add(new ARMLoadLabel("a1", DataTable.PRINT_INT_FORMAT_STR_LABEL));
-            if (outputTableEntry.isRegisterAllocated()) {
-                instructions.add(new ARMMov("a2", outputTableEntry.register));
+            ARMLoadLabel loadFormatStr = new ARMLoadLabel("a1", ctx.dataTable.printIntFormatStrLabel);
+            loadFormatStr.relocatable = false; // the format string is global, it never moves with the method's own labels
+            instructions.add(loadFormatStr);
+            if (outputEntry.isRegisterAllocated()) {
+                instructions.add(new ARMMov("a2", outputEntry.register));
             } else {
-                instructions.add(new ARMSimpleMemoryLoad("a2", "sp", outputTableEntry.offset));
+                instructions.add(new ARMSimpleMemoryLoad("a2", "sp", outputEntry.offset));
             }
         } else {
-            if (outputTableEntry.isRegisterAllocated()) {
-                instructions.add(new ARMMov("a1", outputTableEntry.register));
+            if (outputEntry.isRegisterAllocated()) {
+                instructions.add(new ARMMov("a1", outputEntry.register));
             } else {
-                instructions.add(new ARMSimpleMemoryLoad("a1", "sp", outputTableEntry.offset));
+                instructions.add(new ARMSimpleMemoryLoad("a1", "sp", outputEntry.offset));
             }
         }
 
@@ -323,11 +370,14 @@ class ConstructionIR3 extends IR3 {
     public String cls;
     public Integer size;
 
-    public ConstructionIR3(String cls) {
-        this.lvalue = IR3.mkVar(new RefType(cls));
+    ConstructionIR3() {} // filled in by CompactIR3.get
+
+    public ConstructionIR3(CompilationContext ctx, String cls) {
+        this.lvalue = ctx.mkVar(ctx.classTables.typeOf(cls));
+        this.lvalueEntry = entry(ctx, lvalue);
         this.cls = cls;
 
-        this.size = ClassTables.get(cls).size;
+        this.size = ctx.classTables.get(cls).size;
     }
 
     @Override
@@ -338,19 +388,17 @@ class ConstructionIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
         instructions.add(new ARMLoadLiteral("a1", size));
         instructions.add(new ARMMalloc());
         instructions.add(new ARMMov("v1", "a1"));
 
-        SymbolTableEntry lvalueTableEntry = SymbolTables.currentTable.getEntry(lvalue);
-
-        if (lvalueTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMMov(lvalueTableEntry.register, "v1"));
+        if (lvalueEntry.isRegisterAllocated()) {
+            instructions.add(new ARMMov(lvalueEntry.register, "v1"));
         } else {
-            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueEntry.offset));
         }
 
         return instructions;
@@ -359,12 +407,16 @@ class ConstructionIR3 extends IR3 {
 
 class ReturnIR3 extends IR3 {
     public String retval;
+    public SymbolTableEntry retvalEntry;
+
+    ReturnIR3() {} // filled in by CompactIR3.get
 
-    public ReturnIR3(String retval) {
+    public ReturnIR3(CompilationContext ctx, String retval) {
         this.retval = retval;
+        this.retvalEntry = entry(ctx, retval);
     }
-    public ReturnIR3() {
-        this(null);
+    public ReturnIR3(CompilationContext ctx) {
+        this(ctx, null);
     }
 
     @Override
@@ -377,19 +429,17 @@ class ReturnIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        SymbolTableEntry retvalTableEntry = SymbolTables.currentTable.getEntry(retval);
-
-        if (retvalTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMMov("a1", retvalTableEntry.register));
+        if (retvalEntry.isRegisterAllocated()) {
+            instructions.add(new ARMMov("a1", retvalEntry.register));
         } else {
-            instructions.add(new ARMSimpleMemoryLoad("a1", "sp", retvalTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryLoad("a1", "sp", retvalEntry.offset));
         }
 
         // leave the function
-        Integer sizeOfStackFrameNeeded = SymbolTables.currentTable.size;
+        Integer sizeOfStackFrameNeeded = ctx.symbolTables.currentTable.size;
         instructions.add(new ARMLoadLiteral("v5", sizeOfStackFrameNeeded));
         instructions.add(new ARMArithmetic("+", "sp", "sp", "v5"));
 
@@ -401,10 +451,15 @@ class ReturnIR3 extends IR3 {
 
 class AssignmentIR3 extends IR3 {
     public String val;
+    public SymbolTableEntry valEntry;
+
+    AssignmentIR3() {} // filled in by CompactIR3.get
 
-    public AssignmentIR3(String assignee, String val) {
+    public AssignmentIR3(CompilationContext ctx, String assignee, String val) {
         this.lvalue = assignee;
+        this.lvalueEntry = entry(ctx, assignee);
         this.val = val;
+        this.valEntry = entry(ctx, val);
     }
 
     @Override
@@ -415,21 +470,18 @@ class AssignmentIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        SymbolTableEntry lvalueTableEntry = SymbolTables.currentTable.getEntry(lvalue);
-        SymbolTableEntry rvalueTableEntry = SymbolTables.currentTable.getEntry(val);
-
-        if (lvalueTableEntry.isRegisterAllocated() && rvalueTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMMov(lvalueTableEntry.register, rvalueTableEntry.register));
-        } else if (lvalueTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMSimpleMemoryLoad(lvalueTableEntry.register, "sp", rvalueTableEntry.offset));
-        } else if (rvalueTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMSimpleMemoryStore(rvalueTableEntry.register, "sp", lvalueTableEntry.offset));
+        if (lvalueEntry.isRegisterAllocated() && valEntry.isRegisterAllocated()) {
+            instructions.add(new ARMMov(lvalueEntry.register, valEntry.register));
+        } else if (lvalueEntry.isRegisterAllocated()) {
+            instructions.add(new ARMSimpleMemoryLoad(lvalueEntry.register, "sp", valEntry.offset));
+        } else if (valEntry.isRegisterAllocated()) {
+            instructions.add(new ARMSimpleMemoryStore(valEntry.register, "sp", lvalueEntry.offset));
         } else {
-            instructions.add(new ARMSimpleMemoryLoad("v1", "sp", rvalueTableEntry.offset));
-            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryLoad("v1", "sp", valEntry.offset));
+            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueEntry.offset));
         }
 
         return instructions;
@@ -439,8 +491,11 @@ class AssignmentIR3 extends IR3 {
 class LabelAssignmentIR3 extends IR3 {
     public Integer label;
 
-    public LabelAssignmentIR3(String assignee, Integer label) {
+    LabelAssignmentIR3() {} // filled in by CompactIR3.get
+
+    public LabelAssignmentIR3(CompilationContext ctx, String assignee, Integer label) {
         this.lvalue = assignee;
+        this.lvalueEntry = entry(ctx, assignee);
         this.label = label;
     }
 
@@ -452,16 +507,26 @@ class LabelAssignmentIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
-        ArrayList<ARMInstruction> instructions = new ArrayList<>();
+    public void relabel(int offset) {
+        label += offset;
+    }
+
+    @Override
+    public void appendTo(RelocatableText out) {
+        out.append(lvalue + " = =L");
+        out.appendLabel(label);
+        out.append(";\n");
+    }
 
-        SymbolTableEntry lvalueTableEntry = SymbolTables.currentTable.getEntry(lvalue);
+    @Override
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
+        ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        if (lvalueTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMLoadLabel(lvalueTableEntry.register, label));
+        if (lvalueEntry.isRegisterAllocated()) {
+            instructions.add(new ARMLoadLabel(lvalueEntry.register, label));
         } else {
             instructions.add(new ARMLoadLabel("v1", label));
-            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueEntry.offset));
         }
 
         return instructions;
@@ -471,16 +536,21 @@ class LabelAssignmentIR3 extends IR3 {
 class MemberAssignmentIR3 extends IR3 {
     public String field;
     public String val;
+    public SymbolTableEntry valEntry;
     public Integer offset;
 
-    public MemberAssignmentIR3(String assigneeObject, String assigneeField, String val) {
+    MemberAssignmentIR3() {} // filled in by CompactIR3.get
+
+    public MemberAssignmentIR3(CompilationContext ctx, String assigneeObject, String assigneeField, String val) {
         this.lvalue = assigneeObject;
+        this.lvalueEntry = entry(ctx, assigneeObject);
         this.field = assigneeField;
         this.val = val;
+        this.valEntry = entry(ctx, val);
 
         // a current table is expected to be active during IR3 construction
-        Type assigneeObjType = SymbolTables.currentTable.getEntry(assigneeObject).type;
-        this.offset = ClassTables.get(assigneeObjType).getFieldOffset(assigneeField);
+        Type assigneeObjType = lvalueEntry.type;
+        this.offset = ctx.classTables.get(assigneeObjType).getFieldOffset(assigneeField);
     }
 
     @Override
@@ -492,25 +562,21 @@ class MemberAssignmentIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        SymbolTableEntry valTableEntry = SymbolTables.currentTable.getEntry(val);
-
         // put value in v2
-        if (valTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMMov("v2", valTableEntry.register));
+        if (valEntry.isRegisterAllocated()) {
+            instructions.add(new ARMMov("v2", valEntry.register));
         } else {
-            instructions.add(new ARMSimpleMemoryLoad("v2", "sp", valTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryLoad("v2", "sp", valEntry.offset));
         }
 
-        SymbolTableEntry objTableEntry = SymbolTables.currentTable.getEntry(lvalue);
-
         // put object reference in v1
-        if (objTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMMov("v1", objTableEntry.register));
+        if (lvalueEntry.isRegisterAllocated()) {
+            instructions.add(new ARMMov("v1", lvalueEntry.register));
         } else {
-            instructions.add(new ARMSimpleMemoryLoad("v1", "sp", objTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryLoad("v1", "sp", lvalueEntry.offset));
         }
 
         // store the contents of v2 into the memory address pointed to by v1 with offset
@@ -522,18 +588,23 @@ class MemberAssignmentIR3 extends IR3 {
 
 class MemberAccessIR3 extends IR3 {
     public String obj;
+    public SymbolTableEntry objEntry;
     public String field;
     public Integer offset;
 
-    public MemberAccessIR3(String obj, String field) {
+    MemberAccessIR3() {} // filled in by CompactIR3.get
+
+    public MemberAccessIR3(CompilationContext ctx, String obj, String field) {
         // a current table is expected to be active during IR3 construction
-        RefType objType = (RefType) SymbolTables.currentTable.getEntry(obj).type;
+        this.objEntry = entry(ctx, obj);
+        RefType objType = (RefType) objEntry.type;
 
-        this.lvalue = IR3.mkVar(ClassTables.get(objType.classname).getFieldType(field));
+        this.lvalue = ctx.mkVar(ctx.classTables.get(objType.classname).getFieldType(field));
+        this.lvalueEntry = entry(ctx, lvalue);
         this.obj = obj;
         this.field = field;
 
-        this.offset = ClassTables.get(objType).getFieldOffset(field);
+        this.offset = ctx.classTables.get(objType).getFieldOffset(field);
     }
 
     @Override
@@ -545,28 +616,24 @@ class MemberAccessIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        SymbolTableEntry objTableEntry = SymbolTables.currentTable.getEntry(obj);
-
         // put object reference in v1
-        if (objTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMMov("v1", objTableEntry.register));
+        if (objEntry.isRegisterAllocated()) {
+            instructions.add(new ARMMov("v1", objEntry.register));
         } else {
-            instructions.add(new ARMSimpleMemoryLoad("v1", "sp", objTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryLoad("v1", "sp", objEntry.offset));
         }
 
         // load the memory address pointed to by v1 with offset and put it in v2
         instructions.add(new ARMSimpleMemoryLoad("v2", "v1", offset));
 
-        SymbolTableEntry lvalueTableEntry = SymbolTables.currentTable.getEntry(lvalue);
-
         // write contents of v2 into lvalue mem/reg
-        if (lvalueTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMMov(lvalueTableEntry.register, "v2"));
+        if (lvalueEntry.isRegisterAllocated()) {
+            instructions.add(new ARMMov(lvalueEntry.register, "v2"));
         } else {
-            instructions.add(new ARMSimpleMemoryStore("v2", "sp", lvalueTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryStore("v2", "sp", lvalueEntry.offset));
         }
 
         return instructions;
@@ -576,9 +643,14 @@ class MemberAccessIR3 extends IR3 {
 class UnOpIR3 extends IR3 {
     public String op;
     public String operand;
+    public SymbolTableEntry operandEntry;
+
+    UnOpIR3() {} // filled in by CompactIR3.get
 
-    public UnOpIR3(String op, String operand) {
-        this.lvalue = IR3.mkVar(SymbolTables.currentTable.getEntry(operand).type);
+    public UnOpIR3(CompilationContext ctx, String op, String operand) {
+        this.operandEntry = entry(ctx, operand);
+        this.lvalue = ctx.mkVar(operandEntry.type);
+        this.lvalueEntry = entry(ctx, lvalue);
         this.op = op;
         this.operand = operand;
     }
@@ -591,24 +663,20 @@ class UnOpIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        SymbolTableEntry operandTableEntry = SymbolTables.currentTable.getEntry(operand);
-
-        if (operandTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMArithmetic(op, "v1", operandTableEntry.register));
+        if (operandEntry.isRegisterAllocated()) {
+            instructions.add(new ARMArithmetic(op, "v1", operandEntry.register));
         } else {
-            instructions.add(new ARMSimpleMemoryLoad("v2", "sp", operandTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryLoad("v2", "sp", operandEntry.offset));
             instructions.add(new ARMArithmetic(op, "v1", "v2"));
         }
 
-        SymbolTableEntry lvalueTableEntry = SymbolTables.currentTable.getEntry(lvalue);
-
-        if (lvalueTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMMov(lvalueTableEntry.register, "v1"));
+        if (lvalueEntry.isRegisterAllocated()) {
+            instructions.add(new ARMMov(lvalueEntry.register, "v1"));
         } else {
-            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueEntry.offset));
         }
 
         return instructions;
@@ -619,9 +687,16 @@ class BinOpIR3 extends IR3 {
     public String op;
     public String left;
     public String right;
+    public SymbolTableEntry leftEntry;
+    public SymbolTableEntry rightEntry;
 
-    public BinOpIR3(String op, String left, String right) {
-        this.lvalue = IR3.mkVar(SymbolTables.currentTable.getEntry(left).type);
+    BinOpIR3() {} // filled in by CompactIR3.get
+
+    public BinOpIR3(CompilationContext ctx, String op, String left, String right) {
+        this.leftEntry = entry(ctx, left);
+        this.rightEntry = entry(ctx, right);
+        this.lvalue = ctx.mkVar(leftEntry.type);
+        this.lvalueEntry = entry(ctx, lvalue);
         this.op = op;
         this.left = left;
         this.right = right;
@@ -635,32 +710,27 @@ class BinOpIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        SymbolTableEntry leftTableEntry = SymbolTables.currentTable.getEntry(left);
-        SymbolTableEntry rightTableEntry = SymbolTables.currentTable.getEntry(right);
-
-        if (leftTableEntry.isRegisterAllocated() && rightTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMArithmetic(op, "v1", leftTableEntry.register, rightTableEntry.register));
-        } else if (leftTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMSimpleMemoryLoad("v3", "sp", rightTableEntry.offset));
+        if (leftEntry.isRegisterAllocated() && rightEntry.isRegisterAllocated()) {
+            instructions.add(new ARMArithmetic(op, "v1", leftEntry.register, rightEntry.register));
+        } else if (leftEntry.isRegisterAllocated()) {
+            instructions.add(new ARMSimpleMemoryLoad("v3", "sp", rightEntry.offset));
             instructions.add(new ARMArithmetic(op, "v1", "v2", "v3"));
-        } else if (rightTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMSimpleMemoryLoad("v2", "sp", leftTableEntry.offset));
+        } else if (rightEntry.isRegisterAllocated()) {
+            instructions.add(new ARMSimpleMemoryLoad("v2", "sp", leftEntry.offset));
             instructions.add(new ARMArithmetic(op, "v1", "v2", "v3"));
         } else {
-            instructions.add(new ARMSimpleMemoryLoad("v2", "sp", leftTableEntry.offset));
-            instructions.add(new ARMSimpleMemoryLoad("v3", "sp", rightTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryLoad("v2", "sp", leftEntry.offset));
+            instructions.add(new ARMSimpleMemoryLoad("v3", "sp", rightEntry.offset));
             instructions.add(new ARMArithmetic(op, "v1", "v2", "v3"));
         }
 
-        SymbolTableEntry lvalueTableEntry = SymbolTables.currentTable.getEntry(lvalue);
-
-        if (lvalueTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMMov(lvalueTableEntry.register, "v1"));
+        if (lvalueEntry.isRegisterAllocated()) {
+            instructions.add(new ARMMov(lvalueEntry.register, "v1"));
         } else {
-            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueEntry.offset));
         }
 
         return instructions;
@@ -670,8 +740,11 @@ class BinOpIR3 extends IR3 {
 class IntIR3 extends IR3 {
     public Integer val;
 
-    public IntIR3(Integer val) {
-        this.lvalue = IR3.mkVar(Type.JLINT);
+    IntIR3() {} // filled in by CompactIR3.get
+
+    public IntIR3(CompilationContext ctx, Integer val) {
+        this.lvalue = ctx.mkVar(Type.JLINT);
+        this.lvalueEntry = entry(ctx, lvalue);
         this.val = val;
     }
 
@@ -683,16 +756,14 @@ class IntIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        SymbolTableEntry lvalueTableEntry = SymbolTables.currentTable.getEntry(lvalue);
-
-        if (lvalueTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMLoadLiteral(lvalueTableEntry.register, val));
+        if (lvalueEntry.isRegisterAllocated()) {
+            instructions.add(new ARMLoadLiteral(lvalueEntry.register, val));
         } else {
             instructions.add(new ARMLoadLiteral("v1", val));
-            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueEntry.offset));
         }
 
         return instructions;
@@ -701,8 +772,11 @@ class IntIR3 extends IR3 {
 class BoolIR3 extends IR3 {
     public Boolean val;
 
-    public BoolIR3(Boolean val) {
-        this.lvalue = IR3.mkVar(Type.JLBOOL);
+    BoolIR3() {} // filled in by CompactIR3.get
+
+    public BoolIR3(CompilationContext ctx, Boolean val) {
+        this.lvalue = ctx.mkVar(Type.JLBOOL);
+        this.lvalueEntry = entry(ctx, lvalue);
         this.val = val;
     }
 
@@ -714,16 +788,14 @@ class BoolIR3 extends IR3 {
     }
 
     @Override
-    public ArrayList<ARMInstruction> toARMInstructions() {
+    public ArrayList<ARMInstruction> toARMInstructions(CompilationContext ctx) {
         ArrayList<ARMInstruction> instructions = new ArrayList<>();
 
-        SymbolTableEntry lvalueTableEntry = SymbolTables.currentTable.getEntry(lvalue);
-
-        if (lvalueTableEntry.isRegisterAllocated()) {
-            instructions.add(new ARMLoadLiteral(lvalueTableEntry.register, val ? 1 : 0));
+        if (lvalueEntry.isRegisterAllocated()) {
+            instructions.add(new ARMLoadLiteral(lvalueEntry.register, val ? 1 : 0));
         } else {
             instructions.add(new ARMLoadLiteral("v1", val ? 1 : 0));
-            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueTableEntry.offset));
+            instructions.add(new ARMSimpleMemoryStore("v1", "sp", lvalueEntry.offset));
         }
 
         return instructions;
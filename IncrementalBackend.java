@@ -0,0 +1,382 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Type checks and generates code class by class, reusing the results of earlier compiles from an on-disk cache.
+ *
+ * A cache entry is keyed by a hash of the class's serialized AST (see ASTSerializer) and remembers the signature
+ * (fields and method types) of every class that type checking and code generation looked up while producing it. An entry is reused
+ * as long as all of those signatures are unchanged, so editing a method body only redoes the edited class,
+ * while changing a signature also redoes every class that depends on it.
+ *
+ * An entry holds the class's IR3 and ARM output as relocatable text (labels are local to the class),
+ * its symbol tables and its string data. When the program is put together, each class's labels are shifted
+ * into the global numbering exactly as in ParallelBackend, so the assembly is the same as a full compile's.
+ */
+class IncrementalBackend {
+    // bump whenever the compiler's output for the same input, or the entry format, changes
+    static final String CACHE_VERSION = "3";
+
+    static class ClassArtifact {
+        HashMap<String, String> dependencySignatures = new HashMap<>(); // class name -> signature hash
+        int labelCount;
+        TreeMap<Integer, DataTableEntry> data = new TreeMap<>();
+        LinkedHashMap<String, SymbolTable> symbolTables = new LinkedHashMap<>();
+        RelocatableText irs = new RelocatableText();
+        RelocatableText instructions = new RelocatableText();
+        int irCount;
+        int instructionCount;
+
+        boolean isUpToDate(HashMap<String, String> signatures) {
+            for (Map.Entry<String, String> dependency : dependencySignatures.entrySet()) {
+                if (!dependency.getValue().equals(signatures.getOrDefault(dependency.getKey(), ""))) return false;
+            }
+            return true;
+        }
+    }
+
+    public static void compile(CompilationContext ctx, ClassDescriptors cdesc, ProgramAST program, CompilationResult result, String cacheDir) throws TypeCheckingException {
+        ArrayList<ClassAST> classes = new ArrayList<>();
+        classes.add(program.mainClass);
+        classes.addAll(program.classes);
+        int n = classes.size();
+
+        HashMap<String, String> signatures = new HashMap<>();
+        for (ClassAST cls : classes) signatures.put(cls.name, CompileCache.hash(signatureOf(cls)));
+
+        // look up every class in the cache
+        Path[] paths = new Path[n];
+        ClassArtifact[] artifacts = new ClassArtifact[n];
+        for (int i = 0; i < n; i++) {
+            String version = CACHE_VERSION + "." + ASTSerializer.FORMAT_VERSION + "\n";
+            paths[i] = Paths.get(cacheDir, CompileCache.hash(version, ASTSerializer.serialize(classes.get(i))) + ".jlcache");
+            ClassArtifact artifact = load(paths[i]);
+            if (artifact != null && artifact.isUpToDate(signatures)) artifacts[i] = artifact;
+        }
+
+        // type check the stale classes first, so errors are reported just like in a full compile
+        ClassDescriptors[] cdescViews = new ClassDescriptors[n];
+        LocalEnvironment lenv = new LocalEnvironment();
+        for (int i = 0; i < n; i++) {
+            if (artifacts[i] != null) continue;
+            cdescViews[i] = cdesc.recordingView();
+            classes.get(i).typeCheck(cdescViews[i], lenv);
+        }
+
+        // generate the stale classes and store them
+        for (int i = 0; i < n; i++) {
+            if (artifacts[i] != null) {
+                result.reusedClasses++;
+                continue;
+            }
+            result.recompiledClasses++;
+            artifacts[i] = generate(ctx, classes.get(i), cdescViews[i], signatures);
+            store(paths[i], artifacts[i]);
+        }
+
+        // stitch everything together in declaration order
+        result.irs = new ArrayList<>();
+        result.instructions = new ArrayList<>();
+        for (ClassArtifact artifact : artifacts) {
+            int base = ctx.absorb(artifact.labelCount, artifact.data, artifact.symbolTables);
+            CachedIR3 irs = new CachedIR3(artifact.irs, artifact.irCount);
+            CachedARMInstructions instructions = new CachedARMInstructions(artifact.instructions, artifact.instructionCount);
+            irs.relabel(base);
+            instructions.offset = base;
+            result.irs.add(irs);
+            result.instructions.add(instructions);
+        }
+    }
+
+    private static ClassArtifact generate(CompilationContext ctx, ClassAST cls, ClassDescriptors cdescView, HashMap<String, String> signatures) {
+        CompilationContext unitCtx = ctx.forUnit();
+        unitCtx.classTables = ctx.classTables.recordingView();
+
+        ArrayList<IR3> irs = cls.genIR(unitCtx);
+        ArrayList<ARMInstruction> instructions = ARMInstruction.generateARMInstructions(unitCtx, irs);
+
+        ClassArtifact artifact = new ClassArtifact();
+        artifact.labelCount = unitCtx.getLabelCount();
+        artifact.data = unitCtx.dataTable.data;
+        artifact.symbolTables = unitCtx.symbolTables.tables;
+        for (IR3 ir : irs) ir.appendTo(artifact.irs);
+        for (ARMInstruction instruction : instructions) instruction.appendTo(artifact.instructions);
+        artifact.irCount = irs.size();
+        artifact.instructionCount = instructions.size();
+
+        HashSet<String> dependencies = new HashSet<>(cdescView.lookups);
+        dependencies.addAll(unitCtx.classTables.lookups);
+        for (String dependency : dependencies) {
+            artifact.dependencySignatures.put(dependency, signatures.getOrDefault(dependency, ""));
+        }
+        return artifact;
+    }
+
+    // everything other classes can observe about a class
+    public static String signatureOf(ClassAST cls) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("class " + cls.name + " {\n");
+        for (VarDeclAST field : cls.members) sb.append(field.type + " " + field.name + ";\n");
+        for (FuncDeclAST method : cls.methods) {
+            sb.append(method.returntype + " " + method.name + "(");
+            for (VarDeclAST param : method.params) sb.append(param.type + " " + param.name + ",");
+            sb.append(");\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    // a missing, unreadable or outdated entry is simply a cache miss
+    private static ClassArtifact load(Path path) {
+        if (!Files.exists(path)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (!readString(in).equals(CACHE_VERSION)) return null;
+            ClassArtifact artifact = new ClassArtifact();
+
+            int dependencyCount = in.readInt();
+            for (int i = 0; i < dependencyCount; i++) artifact.dependencySignatures.put(readString(in), readString(in));
+
+            artifact.labelCount = in.readInt();
+            int dataCount = in.readInt();
+            for (int i = 0; i < dataCount; i++) {
+                int label = in.readInt();
+                artifact.data.put(label, new DataTableEntry(readString(in), readString(in)));
+            }
+
+            int tableCount = in.readInt();
+            for (int i = 0; i < tableCount; i++) {
+                String functionName = readString(in);
+                SymbolTable table = new SymbolTable();
+                table.size = in.readInt();
+                readEntries(in, table.params);
+                readEntries(in, table.locals);
+                artifact.symbolTables.put(functionName, table);
+            }
+
+            artifact.irCount = in.readInt();
+            artifact.irs = readText(in);
+            artifact.instructionCount = in.readInt();
+            artifact.instructions = readText(in);
+            return artifact;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // written to a temporary file first, so that concurrent compiles never see a half-written entry
+    private static void store(Path path, ClassArtifact artifact) {
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), "entry", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                writeString(out, CACHE_VERSION);
+
+                out.writeInt(artifact.dependencySignatures.size());
+                for (Map.Entry<String, String> dependency : artifact.dependencySignatures.entrySet()) {
+                    writeString(out, dependency.getKey());
+                    writeString(out, dependency.getValue());
+                }
+
+                out.writeInt(artifact.labelCount);
+                out.writeInt(artifact.data.size());
+                for (Map.Entry<Integer, DataTableEntry> entry : artifact.data.entrySet()) {
+                    out.writeInt(entry.getKey());
+                    writeString(out, entry.getValue().directive);
+                    writeString(out, entry.getValue().item);
+                }
+
+                out.writeInt(artifact.symbolTables.size());
+                for (Map.Entry<String, SymbolTable> table : artifact.symbolTables.entrySet()) {
+                    writeString(out, table.getKey());
+                    out.writeInt(table.getValue().size);
+                    writeEntries(out, table.getValue().params);
+                    writeEntries(out, table.getValue().locals);
+                }
+
+                out.writeInt(artifact.irCount);
+                writeText(out, artifact.irs);
+                out.writeInt(artifact.instructionCount);
+                writeText(out, artifact.instructions);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Cannot write incremental cache entry " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeEntries(DataOutputStream out, Map<String, SymbolTableEntry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (Map.Entry<String, SymbolTableEntry> p : entries.entrySet()) {
+            SymbolTableEntry entry = p.getValue();
+            writeString(out, p.getKey());
+            // reference types are tagged so that a class called e.g. JLInt cannot be mistaken for a value type
+            writeString(out, (entry.type instanceof RefType ? "ref " : "") + entry.type.toString());
+            out.writeInt(entry.isStackAllocated() ? entry.offset : -1);
+            writeString(out, entry.isRegisterAllocated() ? entry.register : "");
+        }
+    }
+
+    private static void readEntries(DataInputStream in, Map<String, SymbolTableEntry> entries) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = readString(in);
+            SymbolTableEntry entry = new SymbolTableEntry();
+            entry.type = readType(readString(in));
+            int offset = in.readInt();
+            String register = readString(in);
+            if (offset >= 0) entry.offset = offset;
+            if (!register.isEmpty()) entry.register = register;
+            entries.put(name, entry);
+        }
+    }
+
+    private static Type readType(String str) {
+        if (str.startsWith("ref ")) return new RefType(str.substring(4));
+        if (str.equals(Type.JLVOID.toString())) return Type.JLVOID;
+        if (str.equals(Type.JLINT.toString())) return Type.JLINT;
+        if (str.equals(Type.JLFLOAT.toString())) return Type.JLFLOAT;
+        if (str.equals(Type.JLBOOL.toString())) return Type.JLBOOL;
+        if (str.equals(Type.JLSTRING.toString())) return Type.JLSTRING;
+        throw new IllegalStateException("Unknown type " + str + " in incremental cache entry");
+    }
+
+    private static void writeText(DataOutputStream out, RelocatableText text) throws IOException {
+        text.finish();
+        out.writeInt(text.labels.size());
+        for (int i = 0; i < text.labels.size(); i++) {
+            writeString(out, text.segments.get(i));
+            out.writeInt(text.labels.get(i));
+        }
+        writeString(out, text.segments.get(text.labels.size()));
+    }
+
+    private static RelocatableText readText(DataInputStream in) throws IOException {
+        RelocatableText text = new RelocatableText();
+        int labelCount = in.readInt();
+        for (int i = 0; i < labelCount; i++) {
+            text.append(readString(in));
+            text.appendLabel(in.readInt());
+        }
+        text.append(readString(in));
+        text.finish();
+        return text;
+    }
+
+    // unlike DataOutputStream.writeUTF, not limited to 64KB
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
+
+/**
+ * Generated text with its label references kept apart, so that it can be rendered with all labels shifted.
+ * segments[i] is the text before labels[i]; the last segment is the text after the last label.
+ */
+class RelocatableText {
+    public ArrayList<String> segments = new ArrayList<>();
+    public ArrayList<Integer> labels = new ArrayList<>();
+    private StringBuilder current = new StringBuilder();
+
+    public void append(String text) {
+        current.append(text);
+    }
+
+    public void appendLabel(int label) {
+        segments.add(current.toString());
+        current.setLength(0);
+        labels.add(label);
+    }
+
+    // closes the last segment, nothing may be appended afterwards
+    public void finish() {
+        if (current == null) return;
+        segments.add(current.toString());
+        current = null;
+    }
+
+    public String render(int offset) {
+        finish();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.size(); i++) {
+            sb.append(segments.get(i));
+            sb.append(labels.get(i) + offset);
+        }
+        sb.append(segments.get(labels.size()));
+        return sb.toString();
+    }
+
+    public void writeTo(ASMWriter out, int offset) {
+        finish();
+        for (int i = 0; i < labels.size(); i++) {
+            out.put(segments.get(i));
+            out.putInt(labels.get(i) + offset);
+        }
+        out.put(segments.get(labels.size()));
+    }
+}
+
+// all of the IR3 of one class, restored from the incremental cache
+class CachedIR3 extends IR3 {
+    public RelocatableText text;
+    public int offset = 0;
+    public int count; // number of IR3 instructions it stands for
+
+    public CachedIR3(RelocatableText text, int count) {
+        this.text = text;
+        this.count = count;
+    }
+
+    @Override
+    public String toString() {
+        return text.render(offset);
+    }
+
+    @Override
+    public void relabel(int offset) {
+        this.offset += offset;
+    }
+}
+
+// all of the ARM instructions of one class, restored from the incremental cache
+class CachedARMInstructions extends ARMInstruction {
+    public RelocatableText text;
+    public int offset = 0;
+    public int count; // number of ARM instructions it stands for
+
+    public CachedARMInstructions(RelocatableText text, int count) {
+        this.text = text;
+        this.count = count;
+    }
+
+    @Override
+    public void writeTo(ASMWriter out) {
+        text.writeTo(out, offset);
+    }
+
+    @Override
+    public String toString() {
+        return text.render(offset);
+    }
+}
@@ -1,32 +1,45 @@
 import java.util.HashMap;
-import java.util.Map;
 
+/**
+ * One scope of the type checker's environment.
+ * Scopes are chained: a class, method or block gets a child scope holding only the variables declared in it,
+ * and lookups fall back to the enclosing scopes. Entering a scope is O(1) however much is already in scope.
+ *
+ * Variables are only added right after a scope is created, never once it has children, so children may skip
+ * enclosing scopes without variables (e.g. the blocks around if/while bodies) and may be used concurrently.
+ */
 class LocalEnvironment {
-    public HashMap<String, String> vars = new HashMap<>(); // maps variable identifier to type
+    private final LocalEnvironment parent; // nearest enclosing scope that declares variables, null if there is none
+    private HashMap<String, String> vars = null; // maps variable identifier to type, only created once a variable is declared here
     public String currentClass = "NONE";
     public String retType = "Void";
     public String methodName = "";
 
     public LocalEnvironment() {
+        this.parent = null;
     }
     public LocalEnvironment(LocalEnvironment oldEnv) {
-        for (Map.Entry<String, String> entry : oldEnv.vars.entrySet()) {
-            this.vars.put(entry.getKey(), entry.getValue());
-        }
+        this.parent = oldEnv.vars == null ? oldEnv.parent : oldEnv;
         this.currentClass = oldEnv.currentClass;
         this.retType = oldEnv.retType;
         this.methodName = oldEnv.methodName;
     }
 
     public void extend(String name, String type) {
+        if (vars == null) vars = new HashMap<>();
         vars.put(name, type);
     }
 
     public boolean contains(String name) {
-        return vars.containsKey(name);
+        return getType(name) != null;
     }
 
     public String getType(String name) {
-        return vars.get(name);
+        for (LocalEnvironment env = this; env != null; env = env.parent) {
+            if (env.vars == null) continue;
+            String type = env.vars.get(name);
+            if (type != null) return type;
+        }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -1,8 +0,0 @@
-class Pair<A,B> {
-  public A head;
-  public B tail;
-  public Pair(A head, B tail){
-    this.head = head;
-    this.tail = tail;
-  }
-}
@@ -0,0 +1,58 @@
+import java.util.ArrayList;
+
+/**
+ * Generates IR3 and ARM instructions for every method on its own worker.
+ *
+ * Each method is generated in a method-local context, so temporaries and labels are numbered from 0 within the method.
+ * Temporaries only need to be unique within their method's symbol table, so they are left as they are.
+ * Labels end up in the assembly, so before lowering they are shifted into the numbering the sequential
+ * backend would have produced: methods take consecutive blocks of labels in declaration order.
+ * The final assembly is therefore byte-identical to the sequential path.
+ */
+class ParallelBackend {
+    static class MethodUnit {
+        FuncDeclAST method;
+        CompilationContext ctx;
+        ArrayList<IR3> irs;
+        ArrayList<ARMInstruction> instructions;
+
+        MethodUnit(FuncDeclAST method, CompilationContext ctx) {
+            this.method = method;
+            this.ctx = ctx;
+        }
+    }
+
+    public static void generate(CompilationContext ctx, ProgramAST program, CompilationResult result) {
+        ArrayList<ClassAST> classes = new ArrayList<>();
+        classes.add(program.mainClass);
+        classes.addAll(program.classes);
+
+        ArrayList<MethodUnit> units = new ArrayList<>();
+        for (ClassAST cls : classes) {
+            for (FuncDeclAST method : cls.methods) {
+                method.classname = cls.name;
+                units.add(new MethodUnit(method, ctx.forUnit()));
+            }
+        }
+
+        // IR3 generation, one task per method
+        units.parallelStream().forEach(unit -> unit.irs = unit.method.genIR(unit.ctx));
+
+        // move labels into the global numbering and merge the per-method tables, in declaration order
+        for (MethodUnit unit : units) {
+            int base = ctx.absorb(unit.ctx);
+            for (IR3 ir : unit.irs) ir.relabel(base);
+        }
+
+        // ARM lowering, one task per method
+        units.parallelStream().forEach(unit -> unit.instructions = ARMInstruction.generateARMInstructions(unit.ctx, unit.irs));
+
+        // stitch everything together in declaration order
+        result.irs = new ArrayList<>();
+        result.instructions = new ArrayList<>();
+        for (MethodUnit unit : units) {
+            result.irs.addAll(unit.irs);
+            result.instructions.addAll(unit.instructions);
+        }
+    }
+}
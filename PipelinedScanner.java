@@ -0,0 +1,101 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import java_cup.runtime.Scanner;
+import java_cup.runtime.Symbol;
+
+/**
+ * Runs a lexer on its own thread, ahead of the parser. Used with the --pipelined-lexer flag.
+ *
+ * The lexer thread puts tokens into a bounded single-producer/single-consumer ring buffer and the parser takes
+ * them out, so lexing overlaps with parsing and AST construction. Neither side takes a lock: each index is only
+ * written by one thread and published with an ordered store, and a side only waits when the ring is full or empty.
+ * The parser sees exactly the tokens the lexer returns, in order. If the lexer throws, the parser gets the same
+ * exception once it reaches that point in the token stream.
+ *
+ * Since the lexer runs ahead, its illegal character messages can come out before the parser's messages about
+ * earlier tokens, and (for up to a ring's worth of tokens) after a syntax error the parser stopped at.
+ */
+class PipelinedScanner implements Scanner {
+    private static final int CAPACITY = 1024; // tokens, must be a power of two
+
+    private final Scanner lexer;
+    private final Symbol[] ring = new Symbol[CAPACITY];
+    private final AtomicLong head = new AtomicLong(); // next token the parser takes, only written by the parser
+    private final AtomicLong tail = new AtomicLong(); // next slot the lexer fills, only written by the lexer
+    private long knownHead = 0; // the lexer's last look at head
+    private long knownTail = 0; // the parser's last look at tail
+    private Throwable error = null; // thrown by the lexer, published by the null token following it
+    private boolean atEOF = false; // the parser has taken EOF, so the lexer thread is done with the lexer
+    private volatile boolean closed = false;
+
+    public PipelinedScanner(Scanner lexer) {
+        this.lexer = lexer;
+        Thread thread = new Thread(this::lex, "jlite-lexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void lex() {
+        try {
+            Symbol token;
+            do {
+                token = lexer.next_token();
+                if (!put(token)) return;
+            } while (token.sym != sym.EOF);
+        } catch (Throwable e) {
+            error = e;
+            put(null);
+        }
+    }
+
+    // returns false if the parser is done, so the lexer thread should stop
+    private boolean put(Symbol token) {
+        long t = tail.get();
+        for (int waits = 0; t - knownHead == CAPACITY; waits++) {
+            knownHead = head.get();
+            if (t - knownHead < CAPACITY) break;
+            if (closed) return false;
+            backOff(waits);
+        }
+        ring[(int) t & (CAPACITY - 1)] = token;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    @Override
+    public Symbol next_token() throws Exception {
+        // CUP asks again after EOF, and wants a fresh symbol each time
+        if (atEOF) return lexer.next_token();
+        long h = head.get();
+        for (int waits = 0; h == knownTail; waits++) {
+            knownTail = tail.get();
+            if (h != knownTail) break;
+            backOff(waits);
+        }
+        int slot = (int) h & (CAPACITY - 1);
+        Symbol token = ring[slot];
+        ring[slot] = null;
+        head.lazySet(h + 1);
+
+        if (token == null) {
+            if (error instanceof Exception) throw (Exception) error;
+            if (error instanceof Error) throw (Error) error;
+            throw new RuntimeException(error);
+        }
+        atEOF = token.sym == sym.EOF;
+        return token;
+    }
+
+    // spin briefly (the other side is usually just one token away), then yield, then sleep
+    private static void backOff(int waits) {
+        if (waits < 64) Thread.onSpinWait();
+        else if (waits < 128) Thread.yield();
+        else LockSupport.parkNanos(20_000);
+    }
+
+    // called once the parser is done, stops a lexer thread that is still waiting for room in the ring
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,350 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates well-typed JLite programs of any size, for stress and scaling tests, see ScalingCheck.
+ *
+ * The same settings and seed always give the same program. Each knob grows the program about linearly on its own:
+ * expressions and nesting are chains rather than trees, and every method makes exactly the calls callGraph gives it.
+ * Nothing assigns a bare variable (x = a;), which codegen can't handle yet.
+ */
+class ProgramGenerator {
+    static final String[] CALL_GRAPHS = {"none", "chain", "tree", "star", "random"};
+
+    public long seed = 1;
+    public int classes = 10;
+    public int fields = 3; // per class, Int, Bool and String in turn, all assigned in the class's m0
+    public int methods = 5; // per class
+    public int statements = 20; // per method, besides the calls
+    public int expressionDepth = 3; // operators in an expression
+    public int nestingDepth = 2; // ifs and whiles around each statement
+    // which methods each method calls, numbering them across all classes:
+    // none, chain (the next one), tree (2i+1 and 2i+2), star (all call the first) or random (two each)
+    public String callGraph = "chain";
+
+    private Random random;
+    private StringBuilder sb;
+
+    public ProgramGenerator copy() {
+        ProgramGenerator copy = new ProgramGenerator();
+        copy.seed = seed;
+        copy.classes = classes;
+        copy.fields = fields;
+        copy.methods = methods;
+        copy.statements = statements;
+        copy.expressionDepth = expressionDepth;
+        copy.nestingDepth = nestingDepth;
+        copy.callGraph = callGraph;
+        return copy;
+    }
+
+    // flags are --knob=value, returns false if the flag is not recognised
+    public boolean applyFlag(String flag) {
+        int eq = flag.indexOf('=');
+        if (!flag.startsWith("--") || eq < 0) return false;
+        String value = flag.substring(eq + 1);
+        switch (flag.substring(2, eq)) {
+            case "seed":
+                seed = Long.parseLong(value);
+                return true;
+            case "call-graph":
+                for (String graph : CALL_GRAPHS) {
+                    if (graph.equals(value)) {
+                        callGraph = value;
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return set(flag.substring(2, eq), Integer.parseInt(value));
+        }
+    }
+
+    // sets one of the size knobs by its flag name, returns false if there is no such knob
+    public boolean set(String knob, int value) {
+        switch (knob) {
+            case "classes":
+                classes = Math.max(value, 1);
+                return true;
+            case "fields":
+                fields = value;
+                return true;
+            case "methods":
+                methods = Math.max(value, 1);
+                return true;
+            case "statements":
+                statements = value;
+                return true;
+            case "expression-depth":
+                expressionDepth = value;
+                return true;
+            case "nesting-depth":
+                nestingDepth = value;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public int get(String knob) {
+        switch (knob) {
+            case "classes":
+                return classes;
+            case "fields":
+                return fields;
+            case "methods":
+                return methods;
+            case "statements":
+                return statements;
+            case "expression-depth":
+                return expressionDepth;
+            case "nesting-depth":
+                return nestingDepth;
+            default:
+                throw new IllegalArgumentException("No knob " + knob);
+        }
+    }
+
+    public String generate() {
+        random = new Random(seed);
+        sb = new StringBuilder();
+        sb.append("class Main {\n");
+        sb.append("    Void main() {\n");
+        sb.append("        Int r;\n");
+        sb.append("        C0 o;\n");
+        sb.append("        o = new C0();\n");
+        sb.append("        r = o.m0(1, 2);\n");
+        sb.append("        println(r);\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        for (int k = 0; k < classes; k++) {
+            sb.append("\nclass C").append(k).append(" {\n");
+            for (int i = 0; i < fields; i++) {
+                sb.append("    ").append(fieldType(i)).append(" f").append(i).append(";\n");
+            }
+            for (int j = 0; j < methods; j++) method(k, j);
+            sb.append("}\n");
+        }
+        String program = sb.toString();
+        sb = null;
+        return program;
+    }
+
+    private void method(int k, int j) {
+        ArrayList<Integer> callees = callees(k * methods + j);
+        sb.append("\n    Int m").append(j).append("(Int a, Int b) {\n");
+        sb.append("        Int x;\n");
+        sb.append("        Int y;\n");
+        sb.append("        Bool c;\n");
+        sb.append("        String s;\n");
+        ArrayList<Integer> objects = new ArrayList<>();
+        for (int callee : callees) {
+            int cls = callee / methods;
+            if (cls != k && !objects.contains(cls)) {
+                objects.add(cls);
+                sb.append("        C").append(cls).append(" o").append(cls).append(";\n");
+            }
+        }
+
+        sb.append("        x = a + 1;\n");
+        sb.append("        y = b * 2;\n");
+        sb.append("        c = a < b;\n");
+        sb.append("        s = \"C").append(k).append(".m").append(j).append("\";\n");
+        if (j == 0) {
+            for (int i = 0; i < fields; i++) {
+                sb.append("        this.f").append(i).append(" = ").append(literal(fieldType(i))).append(";\n");
+            }
+        }
+        for (int i = 0; i < statements; i++) nested(nestingDepth, 2);
+        for (int callee : callees) {
+            int cls = callee / methods;
+            if (cls == k) {
+                sb.append("        y = this.m").append(callee % methods).append("(x, y);\n");
+            } else {
+                sb.append("        o").append(cls).append(" = new C").append(cls).append("();\n");
+                sb.append("        y = o").append(cls).append(".m").append(callee % methods).append("(x, y);\n");
+            }
+        }
+        sb.append("        return x;\n");
+        sb.append("    }\n");
+    }
+
+    private ArrayList<Integer> callees(int method) {
+        int count = classes * methods;
+        ArrayList<Integer> callees = new ArrayList<>();
+        switch (callGraph) {
+            case "chain":
+                if (method + 1 < count) callees.add(method + 1);
+                break;
+            case "tree":
+                if (2 * method + 1 < count) callees.add(2 * method + 1);
+                if (2 * method + 2 < count) callees.add(2 * method + 2);
+                break;
+            case "star":
+                if (method > 0) callees.add(0);
+                break;
+            case "random":
+                callees.add(random.nextInt(count));
+                callees.add(random.nextInt(count));
+                break;
+            default:
+                break;
+        }
+        return callees;
+    }
+
+    // a statement inside nesting ifs and whiles
+    private void nested(int nesting, int indent) {
+        if (nesting == 0) {
+            statement(indent);
+            return;
+        }
+        indent(indent);
+        if (random.nextBoolean()) {
+            sb.append("if (").append(boolExp(1)).append(") {\n");
+            nested(nesting - 1, indent + 1);
+            indent(indent).append("} else {\n");
+            indent(indent + 1).append("x = x - 1;\n");
+            indent(indent).append("}\n");
+        } else {
+            sb.append("while (x < ").append(random.nextInt(100)).append(") {\n");
+            nested(nesting - 1, indent + 1);
+            indent(indent + 1).append("x = x + 1;\n");
+            indent(indent).append("}\n");
+        }
+    }
+
+    private void statement(int indent) {
+        indent(indent);
+        switch (random.nextInt(6)) {
+            case 0:
+                sb.append(random.nextBoolean() ? "x" : "y").append(" = ").append(value("Int")).append(";\n");
+                break;
+            case 1:
+                sb.append("c = ").append(value("Bool")).append(";\n");
+                break;
+            case 2:
+                if (fields > 0) {
+                    int field = random.nextInt(fields);
+                    sb.append("this.f").append(field).append(" = ").append(value(fieldType(field))).append(";\n");
+                } else {
+                    sb.append("y = ").append(value("Int")).append(";\n");
+                }
+                break;
+            case 3:
+                sb.append("println(").append(intExp(expressionDepth)).append(");\n");
+                break;
+            case 4:
+                sb.append("println(").append(stringLeaf()).append(");\n");
+                break;
+            default:
+                sb.append("s = ").append(literal("String")).append(";\n");
+                break;
+        }
+    }
+
+    // the right hand side of an assignment, never a bare variable
+    private String value(String type) {
+        if (type.equals("String")) return literal(type);
+        if (expressionDepth == 0) return literal(type);
+        return type.equals("Int") ? intExp(expressionDepth) : boolExp(expressionDepth);
+    }
+
+    private String intExp(int depth) {
+        if (depth == 0) return intLeaf();
+        String[] operators = {" + ", " - ", " * "};
+        String right = random.nextInt(4) == 0 ? "(-" + intLeaf() + ")" : intLeaf();
+        return "(" + intExp(depth - 1) + operators[random.nextInt(3)] + right + ")";
+    }
+
+    private String boolExp(int depth) {
+        if (depth == 0) return boolLeaf();
+        String[] comparisons = {" < ", " > ", " <= ", " >= ", " == ", " != "};
+        switch (random.nextInt(4)) {
+            case 0:
+                return "(" + boolExp(depth - 1) + " && " + boolLeaf() + ")";
+            case 1:
+                return "(" + boolExp(depth - 1) + " || " + boolLeaf() + ")";
+            case 2:
+                return "(!" + boolExp(depth - 1) + ")";
+            default:
+                return "(" + intExp(depth - 1) + comparisons[random.nextInt(6)] + intLeaf() + ")";
+        }
+    }
+
+    private String intLeaf() {
+        int field = fieldOfType("Int");
+        switch (random.nextInt(6)) {
+            case 0:
+                return "a";
+            case 1:
+                return "b";
+            case 2:
+                return "x";
+            case 3:
+                return "y";
+            case 4:
+                return field >= 0 ? "this.f" + field : "x";
+            default:
+                return literal("Int");
+        }
+    }
+
+    private String boolLeaf() {
+        int field = fieldOfType("Bool");
+        switch (random.nextInt(3)) {
+            case 0:
+                return "c";
+            case 1:
+                return field >= 0 ? "this.f" + field : "c";
+            default:
+                return literal("Bool");
+        }
+    }
+
+    private String stringLeaf() {
+        int field = fieldOfType("String");
+        return field >= 0 && random.nextBoolean() ? "this.f" + field : "s";
+    }
+
+    // a random field of the type, -1 if there is none
+    private int fieldOfType(String type) {
+        int first = type.equals("Int") ? 0 : type.equals("Bool") ? 1 : 2;
+        if (first >= fields) return -1;
+        return first + 3 * random.nextInt((fields - first + 2) / 3);
+    }
+
+    private static String fieldType(int field) {
+        return field % 3 == 0 ? "Int" : field % 3 == 1 ? "Bool" : "String";
+    }
+
+    private String literal(String type) {
+        switch (type) {
+            case "Int":
+                return Integer.toString(random.nextInt(1000));
+            case "Bool":
+                return random.nextBoolean() ? "true" : "false";
+            default:
+                return "\"s" + random.nextInt(1000) + "\"";
+        }
+    }
+
+    private StringBuilder indent(int level) {
+        for (int i = 0; i < level; i++) sb.append("    ");
+        return sb;
+    }
+
+    // usage: ProgramGenerator [--seed=N] [--classes=N] [--fields=N] [--methods=N] [--statements=N]
+    //        [--expression-depth=N] [--nesting-depth=N] [--call-graph=none|chain|tree|star|random]
+    public static void main(String[] args) {
+        ProgramGenerator generator = new ProgramGenerator();
+        for (String arg : args) {
+            if (!generator.applyFlag(arg)) {
+                System.err.println("Unknown flag " + arg);
+                System.exit(2);
+            }
+        }
+        System.out.print(generator.generate());
+    }
+}
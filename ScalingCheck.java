@@ -0,0 +1,111 @@
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Checks that compile time and memory grow about linearly with the size of the program.
+ *
+ * Each of ProgramGenerator's size knobs in turn is doubled STEPS times from the generator's settings, and the
+ * cost of compiling each token must stay about the same from the smallest program to the largest.
+ * Memory is counted twice, as what the compile allocates and as what its result keeps live.
+ */
+class ScalingCheck {
+    static final String[] KNOBS = {"classes", "fields", "methods", "statements", "expression-depth", "nesting-depth"};
+    static final int STEPS = 3; // so the largest program is 8 times the knob's starting value
+    static final int RUNS = 5; // compiles of each program, the cheapest counts
+    // how much the cost per token may grow, for 8 times the tokens cost ~ tokens^1.3 would be 1.87
+    static final double MAX_TIME_GROWTH = 2.0; // looser, timings are noisy
+    static final double MAX_MEMORY_GROWTH = 1.5;
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    private static CompilationResult kept; // keeps a result live while its size is measured
+
+    static class Sample {
+        public long tokens;
+        public long nanos = Long.MAX_VALUE;
+        public long allocatedBytes = Long.MAX_VALUE;
+        public long retainedBytes;
+    }
+
+    static Sample measure(String source, CompilerOptions options) throws Exception {
+        Sample sample = new Sample();
+        sample.tokens = CompilerPhases.fastLex(source);
+        for (int i = 0; i < RUNS; i++) {
+            long allocatedAtStart = CompileStats.allocatedBytes();
+            long start = System.nanoTime();
+            CompilationResult result = Compiler.compile(new StringReader(source), options);
+            long nanos = System.nanoTime() - start;
+            long allocated = CompileStats.allocatedBytes() - allocatedAtStart;
+            if (!result.isSuccessful()) throw result.error;
+            sample.nanos = Math.min(sample.nanos, nanos);
+            sample.allocatedBytes = Math.min(sample.allocatedBytes, allocated);
+            kept = result;
+        }
+
+        long withResult = usedAfterGC();
+        kept = null;
+        sample.retainedBytes = Math.max(withResult - usedAfterGC(), 0);
+        return sample;
+    }
+
+    // a single System.gc() can leave garbage behind, so collect until the heap stops shrinking
+    private static long usedAfterGC() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = MEMORY.getHeapMemoryUsage().getUsed();
+            if (now >= used) break;
+            used = now;
+        }
+        return used;
+    }
+
+    // how many times the cost per token grew from the first program to the last
+    static double growth(Sample first, Sample last, long firstCost, long lastCost) {
+        return ((double) Math.max(lastCost, 1) / last.tokens) / ((double) Math.max(firstCost, 1) / first.tokens);
+    }
+
+    // usage: ScalingCheck [compiler flags] [ProgramGenerator flags]
+    public static void main(String[] args) throws Exception {
+        CompilerOptions options = new CompilerOptions();
+        ProgramGenerator base = new ProgramGenerator();
+        for (String arg : args) {
+            if (!options.applyFlag(arg) && !base.applyFlag(arg)) {
+                System.err.println("Unknown flag " + arg);
+                System.exit(2);
+            }
+        }
+
+        // warm up the JIT before anything is timed
+        String warmup = base.generate();
+        for (int i = 0; i < 4 * RUNS; i++) Compiler.compile(new StringReader(warmup), options);
+
+        int failed = 0;
+        System.out.printf("%-18s %8s %10s %10s %12s %12s%n", "knob", "value", "tokens", "ms", "alloc KB", "retained KB");
+        for (String knob : KNOBS) {
+            Sample[] samples = new Sample[STEPS + 1];
+            int value = Math.max(base.get(knob), 1);
+            for (int step = 0; step <= STEPS; step++, value *= 2) {
+                ProgramGenerator generator = base.copy();
+                generator.set(knob, value);
+                samples[step] = measure(generator.generate(), options);
+                System.out.printf("%-18s %8d %10d %10.2f %12d %12d%n", knob, value, samples[step].tokens,
+                        samples[step].nanos / 1e6, samples[step].allocatedBytes / 1024, samples[step].retainedBytes / 1024);
+            }
+
+            Sample first = samples[0], last = samples[STEPS];
+            double time = growth(first, last, first.nanos, last.nanos);
+            double allocated = growth(first, last, first.allocatedBytes, last.allocatedBytes);
+            double retained = growth(first, last, first.retainedBytes, last.retainedBytes);
+            boolean ok = time <= MAX_TIME_GROWTH && allocated <= MAX_MEMORY_GROWTH && retained <= MAX_MEMORY_GROWTH;
+            if (!ok) failed++;
+            System.out.printf("%-18s per token: time x%.2f alloc x%.2f retained x%.2f %s%n%n", knob, time, allocated,
+                    retained, ok ? "ok" : "NOT LINEAR");
+        }
+
+        if (failed > 0) {
+            System.err.println(failed + " of " + KNOBS.length + " knobs don't scale linearly");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * The training run for the fast-start class data sharing archive, see make cds.
+ *
+ * Compiles every program in a directory the way make fast compiles one, all in one JVM, so that the archive gets
+ * every class those compiles load. Programs that don't compile are fine, their error paths are archived as well.
+ */
+class StartupTraining {
+    // usage: StartupTraining [flags...] directory
+    public static void main(String[] args) throws Exception {
+        File[] files = new File(args[args.length - 1]).listFiles();
+        Arrays.sort(files);
+        File asm = File.createTempFile("jlite-training", ".s");
+
+        // the driver prints everything it compiles, which would only hide the training run's own errors
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (File file : files) {
+                CompilerOptions options = CompilerOptions.verbose();
+                options.asmOutputFile = asm.getPath();
+                for (int i = 0; i < args.length - 1; i++) {
+                    if (!options.applyFlag(args[i])) throw new IllegalArgumentException("Unknown flag " + args[i]);
+                }
+                Compiler.compileFile(file.getPath(), options);
+            }
+        } finally {
+            System.setOut(stdout);
+            asm.delete();
+        }
+        System.out.println("Compiled " + files.length + " programs");
+    }
+}
@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Generates, lowers and writes out one method at a time, so the backend's memory use doesn't grow with the number of methods.
+ *
+ * Each method goes genIR -> ARM lowering -> ASMWriter, after which its IR3, instructions and symbol table are dropped.
+ * The .data section comes first in the file but is only complete once every method has been generated, so the .text
+ * section is streamed to a temporary file next to the output, and the data section is written last, followed by a
+ * channel-to-channel copy of the text. Labels are numbered exactly as in a sequential compile, so the assembly is identical.
+ */
+class StreamingBackend {
+    // stats may be null, otherwise each method's temporaries and frame size are recorded before its table is dropped
+    public static void compile(CompilationContext ctx, ProgramAST program, String filename, CompileStats stats) throws IOException {
+        ArrayList<ClassAST> classes = new ArrayList<>();
+        classes.add(program.mainClass);
+        classes.addAll(program.classes);
+
+        Path output = Paths.get(filename).toAbsolutePath();
+        Path text = Files.createTempFile(output.getParent(), output.getFileName().toString(), ".text");
+        try {
+            try (FileChannel textChannel = FileChannel.open(text, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ASMWriter out = new ASMWriter(textChannel);
+                for (ClassAST cls : classes) {
+                    for (FuncDeclAST method : cls.methods) {
+                        method.classname = cls.name;
+                        ArrayList<IR3> irs = method.genIR(ctx);
+                        for (ARMInstruction instruction : ARMInstruction.generateARMInstructions(ctx, irs)) {
+                            instruction.writeTo(out);
+                        }
+                        SymbolTable table = ctx.symbolTables.tables.remove(method.augmentedName());
+                        if (stats != null) stats.addMethod(method.augmentedName(), table);
+                    }
+                }
+                out.flush();
+            }
+
+            try (FileChannel outChannel = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                 FileChannel textChannel = FileChannel.open(text, StandardOpenOption.READ)) {
+                ASMWriter out = new ASMWriter(outChannel);
+                out.put(ARMInstruction.getLeadingBoilerplate(ctx));
+                out.flush();
+
+                long position = 0;
+                long size = textChannel.size();
+                while (position < size) position += textChannel.transferTo(position, size - position, outChannel);
+
+                out.put(ARMInstruction.getTrailingBoilerplate());
+                out.flush();
+            }
+        } finally {
+            Files.deleteIfExists(text);
+        }
+    }
+}
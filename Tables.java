@@ -1,6 +1,8 @@
+import java.util.HashSet;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.TreeMap;
 import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 class SymbolTableEntry {
     public Type type;
@@ -104,28 +106,28 @@ class SymbolTable {
 }
 
 class SymbolTables {
-    public static HashMap<String, SymbolTable> tables = new HashMap<>();
-    public static SymbolTable currentTable;
+    public LinkedHashMap<String, SymbolTable> tables = new LinkedHashMap<>(); // in the order the functions were generated
+    public SymbolTable currentTable;
 
-    public static void create() {
+    public void create() {
         currentTable = new SymbolTable();
     }
 
-    public static void flush(String functionName) {
+    public void flush(String functionName) {
         currentTable.generateOffsetsAndRegisters();
         tables.put(functionName, currentTable);
         currentTable = null;
     }
 
-    public static SymbolTable get(String functionName) {
+    public SymbolTable get(String functionName) {
         return tables.get(functionName);
     }
 
-    public static void print() {
+    public void print() {
         StringBuilder sb = new StringBuilder();
         sb.append("===== Symbol Tables BEGIN =====\n");
 
-        for (HashMap.Entry<String, SymbolTable> p : tables.entrySet()) {
+        for (Map.Entry<String, SymbolTable> p : tables.entrySet()) {
             sb.append("size = " + p.getValue().size + "\n");
             sb.append("function " + p.getKey() + "\n");
             sb.append(p.getValue().toString());
@@ -157,13 +159,13 @@ class ClassTableEntry {
 
 class ClassTable {
     public String name;
-    public HashMap<String, ClassTableEntry> fields = new HashMap<>();
+    public LinkedHashMap<String, ClassTableEntry> fields = new LinkedHashMap<>(); // in declaration order, which also fixes the heap offsets
     public Integer size = 0;
 
-    public ClassTable(ClassDescriptor cdesc) {
+    public ClassTable(ClassDescriptor cdesc, ClassTables classTables) {
         this.name = cdesc.name;
         for (Map.Entry<String, String> field : cdesc.fields.entrySet()) {
-            Type type = Type.fromTypeString(field.getValue());
+            Type type = classTables.typeOf(field.getValue());
             Integer offset = size;
             size += type.width();
 
@@ -195,24 +197,42 @@ class ClassTable {
 }
 
 class ClassTables {
-    public static HashMap<String, ClassTable> tables = new HashMap<>();
-    public static String nameOfMainClass = "Main";
+    public LinkedHashMap<String, ClassTable> tables = new LinkedHashMap<>(); // in declaration order
+    public String nameOfMainClass = "Main";
+    public HashSet<String> lookups = null; // if not null, every class looked up is recorded here (see recordingView)
+    public ConcurrentHashMap<String, Type> types = new ConcurrentHashMap<>(); // canonical Type of each type name, see typeOf
 
-    public static void generateFromClassDescriptors(ClassDescriptors cdescs) {
+    public void generateFromClassDescriptors(ClassDescriptors cdescs) {
         for (Map.Entry<String, ClassDescriptor> entry : cdescs.classes.entrySet()) {
             if (entry.getValue().hasMethod("main")) nameOfMainClass = entry.getKey();
-            tables.put(entry.getKey(), new ClassTable(entry.getValue()));
+            tables.put(entry.getKey(), new ClassTable(entry.getValue(), this));
         }
     }
 
-    public static ClassTable get(String className) {
+    // one Type object per type name and compilation, instead of a new RefType every time
+    public Type typeOf(String typeName) {
+        return types.computeIfAbsent(typeName, Type::fromTypeString);
+    }
+
+    public ClassTable get(String className) {
+        if (lookups != null) lookups.add(className);
         return tables.get(className);
     }
-    public static ClassTable get(Type classNameType) {
-        return tables.get(classNameType.toString());
+    public ClassTable get(Type classNameType) {
+        return get(classNameType.toString());
+    }
+
+    // a view sharing the same tables that records which classes are looked up through it
+    public ClassTables recordingView() {
+        ClassTables view = new ClassTables();
+        view.tables = this.tables;
+        view.nameOfMainClass = this.nameOfMainClass;
+        view.types = this.types;
+        view.lookups = new HashSet<>();
+        return view;
     }
 
-    public static void print() {
+    public void print() {
         StringBuilder sb = new StringBuilder();
         sb.append("===== Class Table BEGIN =====\n");
 
@@ -251,25 +271,25 @@ class DataTableEntry {
 }
 
 class DataTable {
-    public static HashMap<Integer, DataTableEntry> data = new HashMap<>();
+    public TreeMap<Integer, DataTableEntry> data = new TreeMap<>(); // emitted in label order
 
-    public static void create(Integer label, DataTableEntry entry) {
+    public void create(Integer label, DataTableEntry entry) {
         data.put(label, entry);
     }
 
-    public static boolean has(Integer label) {
+    public boolean has(Integer label) {
         return data.containsKey(label);
     }
 
-    public static DataTableEntry get(Integer label) {
+    public DataTableEntry get(Integer label) {
         return data.get(label);
     }
 
-    public static void print() {
+    public void print() {
         System.out.println(getTableString());
     }
 
-    public static String getTableString() {
+    public String getTableString() {
         StringBuilder sb = new StringBuilder();
 
         for (Map.Entry<Integer, DataTableEntry> p : data.entrySet()) {
@@ -281,9 +301,9 @@ class DataTable {
         return sb.toString();
     }
 
-    public static Integer PRINT_INT_FORMAT_STR_LABEL;
-    public static void init() {
-        PRINT_INT_FORMAT_STR_LABEL = IR3.mkLabel();
-        DataTable.create(PRINT_INT_FORMAT_STR_LABEL, new DataTableEntry(".asciz", "%i"));
+    public Integer printIntFormatStrLabel;
+    public void init(CompilationContext ctx) {
+        printIntFormatStrLabel = ctx.mkLabel();
+        this.create(printIntFormatStrLabel, new DataTableEntry(".asciz", "%i"));
     }
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ abstract class Type {
     public static Type JLVOID = new JLVoid();
     public static Type JLSTRING = new JLString();
 
+    // allocates a new RefType for class types, code generation should use ClassTables.typeOf instead
     public static Type fromTypeString(String str) {
         if (str.equals("Void")) return JLVOID;
         if (str.equals("Int")) return JLINT;
@@ -67,7 +68,12 @@ class RefType extends Type {
 
     @Override
     public boolean equals(Object o) {
-        return (o instanceof RefType) && this.classname.equals(((RefType)o).classname);
+        return this == o || (o instanceof RefType) && this.classname.equals(((RefType)o).classname);
+    }
+
+    @Override
+    public int hashCode() {
+        return classname.hashCode();
     }
 
     @Override
@@ -112,3 +118,21 @@ class JLString extends Type {
         return false;
     }
 }
+
+/**
+ * Canonical instances of identifiers and type names.
+ * The lexer interns every name it reads and all other type names in the compiler are string literals,
+ * which the JVM interns as well, so type names can be compared by identity (see same).
+ * The JVM's string table drops names nobody refers to any more, so a long running compile server doesn't leak.
+ */
+class Symbols {
+    public static String intern(String name) {
+        return name == null ? null : name.intern();
+    }
+
+    // compares two interned type names, run with -ea to catch one that isn't interned
+    public static boolean same(String a, String b) {
+        assert a == b || a == null || !a.equals(b) : "type name " + a + " is not interned";
+        return a == b;
+    }
+}
@@ -0,0 +1,176 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times each phase of the compiler on its own, see make bench.
+ *
+ * Programs are files (relative to the directory make runs in), or synthetic:classes:methods:statements:depth for
+ * one built by CompilerPhases.synthetic. Each phase runs on what the earlier phases made in setup, so only the
+ * phase itself is measured. The phases are called through CompilerPhases, see there for why.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseBenchmarks {
+    private static final MethodHandle LEX = phase("lex", String.class);
+    private static final MethodHandle FAST_LEX = phase("fastLex", String.class);
+    private static final MethodHandle PARSE = phase("parse", String.class);
+    private static final MethodHandle FAST_PARSE = phase("fastParse", String.class);
+    private static final MethodHandle DISTINCT_NAMES_CHECK = phase("distinctNamesCheck", Object.class);
+    private static final MethodHandle CLASS_DESCRIPTORS = phase("classDescriptors", Object.class);
+    private static final MethodHandle TYPE_CHECK = phase("typeCheck", Object.class, Object.class);
+    private static final MethodHandle CODEGEN_CONTEXT = phase("codegenContext", Object.class);
+    private static final MethodHandle GEN_IR = phase("genIR", Object.class, Object.class);
+    private static final MethodHandle GENERATE_ARM_INSTRUCTIONS =
+            phase("generateARMInstructions", Object.class, Object.class);
+    private static final MethodHandle GET_ASM_STRING = phase("getASMString", Object.class, Object.class);
+    private static final MethodHandle FRONT_END = phase("frontEnd", Object.class);
+    private static final MethodHandle FUSED_FRONT_END = phase("fusedFrontEnd", Object.class);
+    private static final MethodHandle SYNTHETIC = phase("synthetic", int.class, int.class, int.class, int.class);
+
+    private static MethodHandle phase(String name, Class<?>... params) {
+        try {
+            Method method = Class.forName("CompilerPhases").getDeclaredMethod(name, params);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // a program, type checked and ready for codegen
+    @State(Scope.Benchmark)
+    public static class Program {
+        // the tests/ programs that get through codegen, the other samples fail to type check or crash in codegen
+        @Param({
+            "tests/codegen.1.txt", "tests/codegen.2.txt", "tests/codegen.3.txt", "tests/sample.3.pl",
+            "synthetic:1:1:10:1", "synthetic:10:10:20:2", "synthetic:20:20:20:4"
+        })
+        public String program;
+
+        String source;
+        Object ast;
+        Object classDescriptors;
+
+        @Setup(Level.Trial)
+        public void setup() throws Throwable {
+            if (program.startsWith("synthetic:")) {
+                String[] size = program.split(":");
+                source = (String) SYNTHETIC.invokeExact(Integer.parseInt(size[1]), Integer.parseInt(size[2]),
+                        Integer.parseInt(size[3]), Integer.parseInt(size[4]));
+            } else {
+                source = new String(Files.readAllBytes(Paths.get(program)), StandardCharsets.UTF_8);
+            }
+            ast = (Object) FAST_PARSE.invokeExact(source);
+            DISTINCT_NAMES_CHECK.invokeExact(ast);
+            classDescriptors = (Object) CLASS_DESCRIPTORS.invokeExact(ast);
+            // genIR needs the types typeCheck fills in, the environment it returns isn't needed
+            Object unused = (Object) TYPE_CHECK.invokeExact(ast, classDescriptors);
+        }
+    }
+
+    // genIR fills in its context, so every call gets a fresh one
+    // (per invocation setup is timed around every call, which skews the shortest programs a little)
+    @State(Scope.Thread)
+    public static class Context {
+        Object ctx;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) throws Throwable {
+            ctx = (Object) CODEGEN_CONTEXT.invokeExact(program.ast);
+        }
+    }
+
+    // the program's IR3 and ARM instructions, which lowering and printing only read
+    @State(Scope.Benchmark)
+    public static class Lowered {
+        Object ctx;
+        Object irs;
+        Object instructions;
+
+        @Setup(Level.Trial)
+        public void setup(Program program) throws Throwable {
+            ctx = (Object) CODEGEN_CONTEXT.invokeExact(program.ast);
+            irs = (Object) GEN_IR.invokeExact(program.ast, ctx);
+            instructions = (Object) GENERATE_ARM_INSTRUCTIONS.invokeExact(ctx, irs);
+        }
+    }
+
+    @Benchmark
+    public int lex(Program program) throws Throwable {
+        return (int) LEX.invokeExact(program.source);
+    }
+
+    @Benchmark
+    public int fastLex(Program program) throws Throwable {
+        return (int) FAST_LEX.invokeExact(program.source);
+    }
+
+    @Benchmark
+    public Object parse(Program program) throws Throwable {
+        return (Object) PARSE.invokeExact(program.source);
+    }
+
+    @Benchmark
+    public Object fastParse(Program program) throws Throwable {
+        return (Object) FAST_PARSE.invokeExact(program.source);
+    }
+
+    @Benchmark
+    public void distinctNamesCheck(Program program) throws Throwable {
+        DISTINCT_NAMES_CHECK.invokeExact(program.ast);
+    }
+
+    @Benchmark
+    public Object typeCheck(Program program) throws Throwable {
+        return (Object) TYPE_CHECK.invokeExact(program.ast, program.classDescriptors);
+    }
+
+    @Benchmark
+    public Object genIR(Program program, Context context) throws Throwable {
+        return (Object) GEN_IR.invokeExact(program.ast, context.ctx);
+    }
+
+    // the phases from distinctNamesCheck to genIR together, as separate walks and fused, see FusedFrontend
+    @Benchmark
+    public Object frontEnd(Program program) throws Throwable {
+        return (Object) FRONT_END.invokeExact(program.ast);
+    }
+
+    @Benchmark
+    public Object fusedFrontEnd(Program program) throws Throwable {
+        return (Object) FUSED_FRONT_END.invokeExact(program.ast);
+    }
+
+    @Benchmark
+    public Object generateARMInstructions(Lowered lowered) throws Throwable {
+        return (Object) GENERATE_ARM_INSTRUCTIONS.invokeExact(lowered.ctx, lowered.irs);
+    }
+
+    @Benchmark
+    public String getASMString(Lowered lowered) throws Throwable {
+        return (String) GET_ASM_STRING.invokeExact(lowered.ctx, lowered.instructions);
+    }
+}